@@ -2,8 +2,10 @@ package auto;
 
 import haven.*;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -11,54 +13,73 @@ import java.util.stream.Stream;
 
 public class GobHelper {
     static List<ITarget> getNearest(GameUI gui, String name, int limit, double distance) {
-	return getGobs(gui, limit, PositionHelper.byDistanceToPlayer, gobIs(name), gob -> PositionHelper.distanceToPlayer(gob) <= distance);
+	return nearest(gui, playerPos(gui), limit, distance, gobIs(name));
     }
     
     static List<ITarget> getNearest(GameUI gui, int limit, double distance, GobTag... tags) {
-	return getGobs(gui, limit, PositionHelper.byDistanceToPlayer, gobIsAny(tags), gob -> PositionHelper.distanceToPlayer(gob) <= distance);
+	return nearest(gui, playerPos(gui), limit, distance, gobIsAny(tags));
     }
     
     @SafeVarargs
     static List<ITarget> getNearest(GameUI gui, int limit, double distance, Predicate<Gob>... filters) {
-	Predicate<Gob> distFilter = gob -> PositionHelper.distanceToPlayer(gob) <= distance;
-	if(filters == null || filters.length == 0) {
-	    filters = new Predicate[]{distFilter};
-	} else {
-	    filters = Utils.extend(filters, filters.length + 1);
-	    filters[filters.length - 1] = distFilter;
-	}
-	return getGobs(gui, limit, PositionHelper.byDistanceToPlayer, filters);
+	return nearest(gui, playerPos(gui), limit, distance, all(filters));
     }
     
     @SafeVarargs
     static List<ITarget> getNearestToPoint(GameUI gui, int limit, Coord2d pos, double distance, Predicate<Gob>... filters) {
-	Predicate<Gob> distFilter = g -> PositionHelper.distanceToCoord(pos, g) <= distance;
-	if(filters == null || filters.length == 0) {
-	    filters = new Predicate[]{distFilter};
-	} else {
-	    filters = Utils.extend(filters, filters.length + 1);
-	    filters[filters.length - 1] = distFilter;
-	}
-	return getGobs(gui, limit, Comparator.comparingDouble(g -> PositionHelper.distanceToCoord(pos, g)), filters);
+	return nearest(gui, pos, limit, distance, all(filters));
     }
     
     private static List<ITarget> getNearest(GameUI gui, int limit, Function<Gob, Double> meter, double distance, GobTag... tags) {
 	return getGobs(gui, limit, Comparator.comparingDouble(meter::apply), gobIsAny(tags), gob -> meter.apply(gob) <= distance);
     }
     
+    //uses the spatial index of the object cache instead of scanning every gob
+    private static List<ITarget> nearest(GameUI gui, Coord2d pos, int limit, double distance, Predicate<Gob> filter) {
+	if(pos == null) {return new ArrayList<>();}
+	return gui.ui.sess.glob.oc.index.nearest(pos, limit, distance, filter).stream()
+	    .map(GobTarget::new)
+	    .collect(Collectors.toList());
+    }
+    
+    private static Coord2d playerPos(GameUI gui) {
+	Gob p = gui.ui.sess.glob.oc.getgob(gui.plid);
+	return p != null ? p.rc : null;
+    }
+    
+    private static Predicate<Gob> all(Predicate<Gob>[] filters) {
+	return gob -> {
+	    for (Predicate<Gob> filter : filters) {
+		if(!filter.test(gob)) {return false;}
+	    }
+	    return true;
+	};
+    }
+    
     @SafeVarargs
     static List<ITarget> getGobs(GameUI gui, int limit, Comparator<Gob> sort, Predicate<Gob>... filters) {
 	Stream<Gob> stream = gui.ui.sess.glob.oc.stream();
 	for (Predicate<Gob> filter : filters) {
 	    stream = stream.filter(filter);
 	}
-	return stream
-	    .sorted(sort)
-	    .limit(limit)
+	return top(stream, sort, limit).stream()
 	    .map(GobTarget::new)
 	    .collect(Collectors.toList());
     }
     
+    //selects the first limit gobs in a bounded heap, rather than sorting them all
+    private static List<Gob> top(Stream<Gob> stream, Comparator<Gob> sort, int limit) {
+	if(limit <= 0) {return new ArrayList<>();}
+	PriorityQueue<Gob> best = new PriorityQueue<>(Math.min(limit, 64) + 1, sort.reversed());
+	stream.forEach(gob -> {
+	    best.add(gob);
+	    if(best.size() > limit) {best.poll();}
+	});
+	List<Gob> ret = new ArrayList<>(best);
+	ret.sort(sort);
+	return ret;
+    }
+    
     static Bot.BotAction waitGobNoPose(Gob gob, long timeout, String... poses) {
 	return (t, b) -> {
 	    if(gob == null) {return;}
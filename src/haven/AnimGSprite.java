@@ -33,6 +33,7 @@ public class AnimGSprite extends GSprite implements GSprite.ImageSprite {
     public final Resource.Anim anim;
     public final Resource.Image ref;
     private int f, ft;
+    private boolean fc;
 
     public static final Factory fact = new Factory() {
 	    public GSprite create(Owner owner, Resource res, Message sdt) {
@@ -68,10 +69,16 @@ public class AnimGSprite extends GSprite implements GSprite.ImageSprite {
     }
 
     public void tick(double dt) {
+	int of = f;
 	ft += Math.round(dt * 1000);
 	while(ft > anim.d) {
 	    f = (f + 1) % anim.f.length;
 	    ft -= anim.d;
 	}
+	fc = (f != of);
+    }
+
+    public boolean animating() {
+	return(fc);
     }
 }
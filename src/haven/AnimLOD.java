@@ -0,0 +1,144 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+
+package haven;
+
+/* Decides how often an animated model needs its pose rebuilt,
+ * from how large it appears in the map view. Models close to the
+ * camera are updated every tick, smaller ones at reduced rates,
+ * and ones that are offscreen or only a few pixels large are not
+ * updated at all until that changes. Animation time keeps running
+ * regardless, so a model always resumes in the right pose. */
+public class AnimLOD {
+    public static final Config.Variable<Boolean> enabled = Config.Variable.propb("haven.animlod", true);
+    /* The size of a model, in world units, that screen sizes are
+     * estimated from, and the screen sizes in pixels at or above
+     * which each rate in RATES applies. */
+    public static final float REFSIZE = 11.0f;
+    public static final float[] SIZES = {48, 16, 6};
+    public static final double[] RATES = {0, 1.0 / 15, 1.0 / 5};
+    public static final double FROZEN = Double.POSITIVE_INFINITY;
+    private static volatile View view = null;
+    private final OwnerContext owner;
+    private Gob gob;
+    private boolean resolved = false;
+    private double since = 0;
+    private boolean frozen = false;
+    private static int nfull, ndecim, nfrozen;
+    private static String lstats = "N/A";
+
+    public static class View {
+	public final Object src;
+	public final Matrix4f pv;
+	public final float p00, pxscale;
+	public final double time;
+
+	public View(Object src, Matrix4f proj, Matrix4f cam, Coord sz) {
+	    this.src = src;
+	    this.pv = proj.mul(cam);
+	    this.p00 = proj.m[0];
+	    this.pxscale = p00 * sz.x * 0.5f;
+	    this.time = Utils.rtime();
+	}
+    }
+
+    public static void view(View v) {
+	view = v;
+	lstats = String.format("%d full, %d decimated, %d frozen", nfull, ndecim, nfrozen);
+	nfull = ndecim = nfrozen = 0;
+    }
+
+    public static void unview(Object src) {
+	View v = view;
+	if((v != null) && (v.src == src))
+	    view = null;
+    }
+
+    public AnimLOD(OwnerContext owner) {
+	this.owner = owner;
+    }
+
+    /* The interval at which a model at the given place should be
+     * updated. */
+    public static double interval(View v, Coord3f pos) {
+	float[] c = v.pv.mul4(new float[] {pos.x, -pos.y, pos.z, 1});
+	if(c[3] <= 0)
+	    return(FROZEN);
+	float sz = (REFSIZE * v.pxscale) / c[3];
+	/* Leave a margin of one model size around the screen. */
+	float m = c[3] + (REFSIZE * v.p00);
+	if((c[0] < -m) || (c[0] > m) || (c[1] < -m) || (c[1] > m))
+	    return(FROZEN);
+	for(int i = 0; i < SIZES.length; i++) {
+	    if(sz >= SIZES[i])
+		return(RATES[i]);
+	}
+	return(FROZEN);
+    }
+
+    private double interval() {
+	View v = view;
+	if(!enabled.get() || (v == null) || (Utils.rtime() - v.time > 1.0))
+	    return(0);
+	if(!resolved) {
+	    gob = (owner == null) ? null : owner.fcontext(Gob.class, false);
+	    resolved = true;
+	}
+	if(gob == null)
+	    return(0);
+	try {
+	    return(interval(v, gob.getc()));
+	} catch(Loading l) {
+	    return(0);
+	}
+    }
+
+    /* Called every tick the model would like to rebuild its pose,
+     * and returns whether it should. A model coming back into view
+     * is always rebuilt at once, however briefly it was frozen. */
+    public boolean due(double dt) {
+	since += dt;
+	double iv = interval();
+	if(iv == 0)
+	    nfull++;
+	else if(iv == FROZEN)
+	    nfrozen++;
+	else
+	    ndecim++;
+	boolean thawed = frozen && (iv != FROZEN);
+	frozen = (iv == FROZEN);
+	if(!thawed && (since < iv))
+	    return(false);
+	since = 0;
+	return(true);
+    }
+
+    /* Over the last frame. */
+    public static String stats() {
+	return(lstats);
+    }
+}
@@ -27,6 +27,7 @@
 package haven;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.io.*;
 import java.nio.file.*;
 import javax.sound.sampled.*;
@@ -40,6 +41,9 @@ public class Audio {
     //public static int bufsize = CFG.AUDIO_BUFFER.get();
     private static int bufsize = Utils.getprefi("audiobuf", Math.round(fmt.getSampleRate() * 0.05f)) * fmt.getFrameSize();
     private static Player player;
+    public static final Config.Variable<Integer> maxvoices = Config.Variable.propi("haven.maxvoices", 32);
+    public static final Config.Variable<Integer> pcmcachesz = Config.Variable.propi("haven.sfxcache", 32);
+    public static final Config.Variable<Double> pcmcachelen = Config.Variable.propf("haven.sfxcachelen", 5.0);
 
     public static void setvolume(double volume) {
 	Audio.volume = volume;
@@ -57,9 +61,23 @@ public class Audio {
     }
     public static final Class<Clip> clip = Clip.class;
 
+    /* Mixes any number of streams. Clips may be added and stopped
+     * from any thread without locking; the changes are picked up by
+     * the mixing thread on its next call to get, which must only be
+     * called from one thread at a time. At most maxvoices clips are
+     * mixed at once, the loudest ones being preferred; the rest are
+     * still read, so that they keep time and reach their ends as
+     * usual, but are not mixed in. */
     public static class Mixer implements CS {
 	public final boolean cont;
-	private final Collection<CS> clips = new LinkedList<CS>();
+	public int maxvoices = Audio.maxvoices.get();
+	private final Queue<CS> added = new ConcurrentLinkedQueue<>();
+	private final Set<CS> live = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	private final List<CS> active = new ArrayList<>();
+	private double[][] buf = new double[0][0];
+	private double[] lvl = new double[0];
+	private boolean[] mix = new boolean[0];
+	public int nmixed, nculled;
 
 	public Mixer(boolean continuous) {
 	    this.cont = continuous;
@@ -69,35 +87,48 @@ public class Audio {
 	    this(false);
 	}
 
-	public int get(double[][] dst, int ns) {
-	    int nch = dst.length;
-	    double[][] buf = new double[nch][ns];
-	    int max = 0;
-	    synchronized(clips) {
-		clip: for(Iterator<CS> i = clips.iterator(); i.hasNext();) {
-		    CS cs = i.next();
-		    int left = ns;
-		    int boff = 0;
-		    while(left > 0) {
-			int ret = cs.get(buf, left);
-			if(ret < 0) {
-			    i.remove();
-			    continue clip;
-			}
-			if(boff + ret > max) {
-			    for(int ch = 0; ch < nch; ch++)
-				Arrays.fill(dst[ch], max, boff + ret, 0.0);
-			    max = boff + ret;
-			}
-			for(int ch = 0; ch < nch; ch++) {
-			    for(int sm = 0; sm < ret; sm++)
-				dst[ch][boff + sm] += buf[ch][sm];
-			}
-			left -= ret;
-			boff += ret;
-		    }
+	private void update() {
+	    for(CS cs; (cs = added.poll()) != null;) {
+		if(live.contains(cs) && !active.contains(cs))
+		    active.add(cs);
+	    }
+	    for(int i = active.size() - 1; i >= 0; i--) {
+		if(!live.contains(active.get(i)))
+		    active.remove(i);
+	    }
+	}
+
+	private void cull() {
+	    int n = active.size();
+	    if(mix.length < n) {
+		mix = new boolean[n * 2];
+		lvl = new double[n * 2];
+	    }
+	    if((maxvoices <= 0) || (n <= maxvoices)) {
+		Arrays.fill(mix, 0, n, true);
+		return;
+	    }
+	    for(int i = 0; i < n; i++) {
+		lvl[i] = level(active.get(i));
+		mix[i] = false;
+	    }
+	    for(int v = 0; v < maxvoices; v++) {
+		int m = -1;
+		for(int i = 0; i < n; i++) {
+		    if(!mix[i] && ((m < 0) || (lvl[i] > lvl[m])))
+			m = i;
 		}
+		mix[m] = true;
 	    }
+	}
+
+	public int get(double[][] dst, int ns) {
+	    int nch = dst.length;
+	    if((buf.length != nch) || ((nch > 0) && (buf[0].length < ns)))
+		buf = new double[nch][Math.max(ns, (buf.length > 0) ? buf[0].length : 0)];
+	    update();
+	    cull();
+	    int max = mix(dst, ns);
 	    if(cont) {
 		for(int ch = 0; ch < nch; ch++) {
 		    for(int sm = max; sm < ns; sm++)
@@ -109,56 +140,82 @@ public class Audio {
 	    }
 	}
 
-	public void add(CS clip) {
-	    synchronized(clips) {
-		clips.add(clip);
+	private int mix(double[][] dst, int ns) {
+	    int nch = dst.length;
+	    int max = 0, nm = 0;
+	    clip: for(int c = 0, n = active.size(); c < n; c++) {
+		CS cs = active.get(c);
+		boolean audible = mix[c];
+		if(audible)
+		    nm++;
+		int left = ns;
+		int boff = 0;
+		while(left > 0) {
+		    int ret = cs.get(buf, left);
+		    if(ret < 0) {
+			live.remove(cs);
+			continue clip;
+		    }
+		    if(boff + ret > max) {
+			for(int ch = 0; ch < nch; ch++)
+			    Arrays.fill(dst[ch], max, boff + ret, 0.0);
+			max = boff + ret;
+		    }
+		    if(audible) {
+			for(int ch = 0; ch < nch; ch++) {
+			    for(int sm = 0; sm < ret; sm++)
+				dst[ch][boff + sm] += buf[ch][sm];
+			}
+		    }
+		    left -= ret;
+		    boff += ret;
+		}
 	    }
+	    nmixed = nm;
+	    nculled = active.size() - nm;
+	    return(max);
+	}
+
+	public void add(CS clip) {
+	    live.add(clip);
+	    added.add(clip);
 	}
 
 	public void stop(CS clip) {
-	    synchronized(clips) {
-		for(Iterator<CS> i = clips.iterator(); i.hasNext();) {
-		    if(i.next() == clip) {
-			i.remove();
-			break;
-		    }
-		}
-	    }
+	    live.remove(clip);
 	}
 
 	public boolean playing(CS clip) {
-	    synchronized(clips) {
-		for(CS cs : clips) {
-		    if(cs == clip)
-			return(true);
-		}
-	    }
-	    return(false);
+	    return(live.contains(clip));
 	}
 
 	public int size() {
-	    synchronized(clips) {
-		return(clips.size());
-	    }
+	    return(live.size());
 	}
 
 	public boolean empty() {
-	    synchronized(clips) {
-		return(clips.isEmpty());
-	    }
+	    return(live.isEmpty());
 	}
 
 	public Collection<CS> current() {
-	    synchronized(clips) {
-		return(new ArrayList<CS>(clips));
-	    }
+	    return(new ArrayList<CS>(live));
 	}
 
 	public void clear() {
-	    synchronized(clips) {
-		clips.clear();
-	    }
+	    live.clear();
+	}
+    }
+
+    /* The level a stream is heard at, as far as can be told from
+     * its volume adjustments; used to pick which voices to mix. */
+    public static double level(CS cs) {
+	double ret = 1.0;
+	while(cs instanceof VolAdjust) {
+	    VolAdjust va = (VolAdjust)cs;
+	    ret *= va.vol;
+	    cs = va.bk;
 	}
+	return(ret);
     }
 
     public static class PCMClip implements CS {
@@ -345,6 +402,10 @@ public class Audio {
 	    this(new VorbisStream(bs));
 	}
 
+	protected float[][] decode() throws IOException {
+	    return(clip.decode());
+	}
+
 	public int get(double[][] dst, int ns) {
 	    int nch = dst.length;
 	    if(data == null)
@@ -352,7 +413,7 @@ public class Audio {
 	    for(int sm = 0; sm < ns; sm++) {
 		while(dp >= data[0].length) {
 		    try {
-			if((data = clip.decode()) == null)
+			if((data = decode()) == null)
 			    return((sm > 0)?sm:-1);
 		    } catch(IOException e) {
 			return(-1);
@@ -367,6 +428,158 @@ public class Audio {
 	}
     }
 
+    /* Keeps the decoded samples of short clips, so that sound
+     * effects played over and over are only decoded once. Clips
+     * longer than maxlen seconds are streamed as before. */
+    public static class PCMCache {
+	public final long maxsz;
+	public final double maxlen;
+	private final Map<Object, Decoded> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private final Set<Object> toolong = Collections.newSetFromMap(new WeakHashMap<>());
+	private long cursz = 0;
+	public long hits, misses, saved;
+
+	public static class Decoded {
+	    public final float[][] data;
+	    public final long dtime;
+
+	    public Decoded(float[][] data, long dtime) {
+		this.data = data;
+		this.dtime = dtime;
+	    }
+
+	    public long size() {
+		return((long)data.length * data[0].length * 4);
+	    }
+	}
+
+	public PCMCache(long maxsz, double maxlen) {
+	    this.maxsz = maxsz;
+	    this.maxlen = maxlen;
+	}
+
+	public CS stream(Object key, byte[] coded) throws IOException {
+	    Decoded dec;
+	    synchronized(this) {
+		if(toolong.contains(key))
+		    return(new VorbisClip(new ByteArrayInputStream(coded)));
+		if((dec = cache.get(key)) != null) {
+		    hits++;
+		    saved += dec.dtime;
+		} else {
+		    misses++;
+		}
+	    }
+	    if(dec != null)
+		return(new DecodedClip(dec.data));
+	    long st = System.nanoTime();
+	    VorbisStream str = new VorbisStream(new ByteArrayInputStream(coded));
+	    return(new Recorder(key, str, System.nanoTime() - st));
+	}
+
+	private synchronized void put(Object key, Decoded dec) {
+	    Decoded prev = cache.put(key, dec);
+	    if(prev != null)
+		cursz -= prev.size();
+	    cursz += dec.size();
+	    for(Iterator<Decoded> i = cache.values().iterator(); (cursz > maxsz) && i.hasNext();) {
+		cursz -= i.next().size();
+		i.remove();
+	    }
+	}
+
+	private synchronized void toolong(Object key) {
+	    toolong.add(key);
+	}
+
+	/* Plays a clip while it is being decoded for the first time,
+	 * and caches it if it turns out short enough. */
+	private class Recorder extends VorbisClip {
+	    private final Object key;
+	    private final int maxns;
+	    private List<float[][]> parts = new ArrayList<>();
+	    private int ns = 0;
+	    private long dtime;
+
+	    Recorder(Object key, VorbisStream clip, long dtime) {
+		super(clip);
+		this.key = key;
+		this.dtime = dtime;
+		this.maxns = (int)(maxlen * clip.rate);
+	    }
+
+	    protected float[][] decode() throws IOException {
+		long st = System.nanoTime();
+		float[][] ret = super.decode();
+		dtime += System.nanoTime() - st;
+		if(parts != null) {
+		    if(ret == null) {
+			if(ns > 0)
+			    put(key, new Decoded(join(), dtime));
+			parts = null;
+		    } else if((ns += ret[0].length) > maxns) {
+			toolong(key);
+			parts = null;
+		    } else {
+			parts.add(ret);
+		    }
+		}
+		return(ret);
+	    }
+
+	    private float[][] join() {
+		float[][] ret = new float[clip.chn][ns];
+		int off = 0;
+		for(float[][] part : parts) {
+		    for(int ch = 0; ch < clip.chn; ch++)
+			System.arraycopy(part[ch], 0, ret[ch], off, part[ch].length);
+		    off += part[0].length;
+		}
+		return(ret);
+	    }
+	}
+
+	public synchronized String stats() {
+	    long n = hits + misses;
+	    return(String.format("%d clips, %.1f/%.1f MiB, %.1f%% hits, %.1f ms decoding saved",
+				 cache.size(), cursz / 1048576.0, maxsz / 1048576.0,
+				 (n > 0) ? (hits * 100.0 / n) : 0.0, saved / 1e6));
+	}
+    }
+
+    public static class DecodedClip implements CS {
+	public final float[][] data;
+	private int dp = 0;
+
+	public DecodedClip(float[][] data) {
+	    this.data = data;
+	}
+
+	public int get(double[][] dst, int ns) {
+	    int nch = dst.length, left = data[0].length - dp;
+	    if(left <= 0)
+		return(-1);
+	    int n = Math.min(ns, left);
+	    for(int ch = 0; ch < nch; ch++) {
+		float[] src = data[ch % data.length];
+		double[] d = dst[ch];
+		for(int sm = 0; sm < n; sm++)
+		    d[sm] = src[dp + sm];
+	    }
+	    dp += n;
+	    return(n);
+	}
+    }
+
+    private static PCMCache pcmcache = null;
+    public static PCMCache pcmcache() {
+	synchronized(Audio.class) {
+	    if(pcmcache == null)
+		pcmcache = new PCMCache(pcmcachesz.get() * 1048576L, pcmcachelen.get());
+	    return(pcmcache);
+	}
+    }
+
     public static class VolAdjust implements CS {
 	public final CS bk;
 	public double vol = 1.0, bal = 0.0;
@@ -549,6 +762,7 @@ public class Audio {
 	private final CS stream;
 	private final int nch;
 	private volatile boolean reopen = false;
+	private double[][] val = new double[0][0];
 
 	Player(CS stream) {
 	    super("Haven audio player");
@@ -559,7 +773,8 @@ public class Audio {
 
 	private int fillbuf(byte[] dst, int off, int len) {
 	    int ns = len / (2 * nch);
-	    double[][] val = new double[nch][ns];
+	    if((val.length != nch) || (val[0].length < ns))
+		val = new double[nch][ns];
 	    int left = ns, wr = 0;
 	    while(left > 0) {
 		int ret = stream.get(val, left);
@@ -732,16 +947,46 @@ public class Audio {
 	Utils.setprefi("audiobuf", nsz);
     }
 
+    /* Mixes the given clips as fast as possible without any sound
+     * device, and reports the mixing throughput. */
+    public static void render(Collection<? extends CS> clips, int nch, int bs) {
+	Mixer mix = new Mixer();
+	for(CS c : clips)
+	    mix.add(c);
+	double[][] buf = new double[nch][bs];
+	long vs = 0, ns = 0;
+	double start = Utils.rtime();
+	for(int ret; (ret = mix.get(buf, bs)) > 0;) {
+	    vs += (long)mix.nmixed * ret;
+	    ns += ret;
+	}
+	double t = (Utils.rtime() - start) * 1000;
+	double rate = fmt.getSampleRate() / 1000.0;
+	System.err.printf("%d clips, %d voices max: %.1f ms of audio in %.1f ms, %.1f voice-ms/ms\n",
+			  clips.size(), mix.maxvoices, ns / rate, t, (vs / rate) / t);
+    }
+
     public static void main(String[] args) throws Exception {
 	Collection<Monitor> clips = new LinkedList<Monitor>();
+	boolean offline = false;
+	int copies = 1;
 	for(int i = 0; i < args.length; i++) {
 	    if(args[i].equals("-b")) {
 		bufsize = Integer.parseInt(args[++i]);
+	    } else if(args[i].equals("-r")) {
+		offline = true;
+	    } else if(args[i].equals("-n")) {
+		copies = Integer.parseInt(args[++i]);
 	    } else {
-		Monitor c = new Monitor(PCMClip.fromwav(Files.newInputStream(Utils.path(args[i]))));
-		clips.add(c);
+		byte[] data = Files.readAllBytes(Utils.path(args[i]));
+		for(int o = 0; o < copies; o++)
+		    clips.add(new Monitor(PCMClip.fromwav(new ByteArrayInputStream(data))));
 	    }
 	}
+	if(offline) {
+	    render(clips, fmt.getChannels(), bufsize / fmt.getFrameSize());
+	    return;
+	}
 	for(Monitor c : clips)
 	    play(c);
 	for(Monitor c : clips)
@@ -78,9 +78,13 @@ public class BAttrWnd extends Widget {
 		}
 		ct = attrf.render(Integer.toString(ccv), c);
 		bt = attrf.render(String.format("(%d)", cbv), Color.WHITE);
+		damage();
+	    }
+	    if(lvlt > 0.0) {
+		if((lvlt -= dt) < 0)
+		    lvlt = 0.0;
+		damage();
 	    }
-	    if((lvlt > 0.0) && ((lvlt -= dt) < 0))
-		lvlt = 0.0;
 	}
 
 	public void draw(GOut g) {
@@ -355,6 +359,7 @@ public class BAttrWnd extends Widget {
 		    els = enew;
 		    rtip = null;
 		    enew = null;
+		    damage();
 		} catch(Loading l) {}
 	    }
 	    if(trev != null) {
@@ -367,6 +372,8 @@ public class BAttrWnd extends Widget {
 		    trev = null;
 		} catch(Loading l) {}
 	    }
+	    if(trtm > 0)
+		damage();
 	}
 
 	public void draw(GOut g) {
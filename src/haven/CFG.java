@@ -170,6 +170,8 @@ public class CFG<T> {
     private final String path;
     public final T def;
     private final Type t;
+    /* Bumped on every change of any setting. */
+    public static volatile int seq = 0;
     private final List<Observer<T>> observers = new LinkedList<>();
 
     static {
@@ -275,6 +277,7 @@ public class CFG<T> {
 
     @SuppressWarnings("unchecked")
     public static synchronized <E> void set(CFG<E> name, E value) {
+	seq++;
 	cache.put(name.path, value);
 	if(name.path == null) {return;}
 	String[] parts = name.path.split("\\.");
@@ -185,6 +185,7 @@ public class CharWnd extends WindowX {
 		    settext(text.get());
 		    text = null;
 		} catch(Loading l) {
+		    damage();
 		}
 	    }
 	    super.draw(g);
@@ -229,6 +230,7 @@ public class CharWnd extends WindowX {
 
 	public void set(Tex img) {
 	    this.img = img;
+	    damage();
 	    if(img != null) {
 		sb.max = img.sz().y + (marg().y * 2) - sz.y;
 		sb.val = 0;
@@ -349,6 +351,7 @@ public class CharWnd extends WindowX {
 
     public CharWnd(Glob glob) {
 	super(UI.scale(new Coord(300, 290)), "Character Sheet");
+	cachedraw = true;
 
 	tabs = new Tabs(new Coord(15, 10), UI.scale(506, 315), this);
         battrtab = tabs.add();
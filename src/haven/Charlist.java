@@ -50,6 +50,7 @@ public class Charlist extends Widget {
 
     public Charlist(int height) {
 	super(Coord.z);
+	ResTrace.context("charsel");
 	this.height = height;
 	setcanfocus(true);
 	sau = adda(new IButton("gfx/hud/buttons/csau", "u", "d", "o"), bsz.x / 2, 0, 0.5, 0)
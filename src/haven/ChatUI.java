@@ -32,6 +32,7 @@ import me.ender.Reflect;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.font.TextAttribute;
@@ -125,12 +126,19 @@ public class ChatUI extends Widget {
     }
 
     public static abstract class Channel extends Widget {
+	/* Only the last maxmsgs messages are kept, and only the
+	 * MAXRENDERED most recently seen of them are kept rendered;
+	 * the rest are rendered again from their messages as they are
+	 * scrolled back to. */
+	public static final Config.Variable<Integer> maxmsgs = Config.Variable.propi("haven.chatmax", 5000);
+	public static final int MAXRENDERED = 256;
 	public final List<RenderedMessage> rmsgs = new ArrayList<>();
 	public int urgency = 0;
 	private final Scrollbar sb;
 	private final IButton cb;
 	private double dy;
 	private PrintWriter log;
+	private int base = 0, nrendered = 0;
 	
 	public boolean process(String msg) {
 	    return !ChatCommands.processCommand(ui, msg);
@@ -141,6 +149,10 @@ public class ChatUI extends Widget {
 		public Message get(int i) {return(rmsgs.get(i).msg);}
 	    };
 
+	public RenderedMessage message(int idx) {
+	    return(rmsgs.get(idx - base));
+	}
+
 	public static abstract class Message {
 	    public final double time = Utils.ntime();
 
@@ -191,6 +203,7 @@ public class ChatUI extends Widget {
 		    if(snewest != null)
 			snewest.sprev = this;
 		    snewest = this;
+		    nrendered++;
 		}
 	    }
 
@@ -204,6 +217,7 @@ public class ChatUI extends Widget {
 			snewest = snext;
 		    if(soldest == this)
 			soldest = sprev;
+		    nrendered--;
 		}
 	    }
 
@@ -233,13 +247,19 @@ public class ChatUI extends Widget {
 		}
 	    }
 
-	    public void invalidate() {
+	    /* Drops everything rendered, but remembers the size for the
+	     * sake of layout. */
+	    public void release() {
 		clear();
 		if(data != null) {
 		    if(data instanceof Disposable)
 			((Disposable)data).dispose();
 		    data = null;
 		}
+	    }
+
+	    public void invalidate() {
+		release();
 		sz = null;
 	    }
 
@@ -262,9 +282,9 @@ public class ChatUI extends Widget {
 	    double now = ui.lasttick;
 	    while(true) {
 		RenderedMessage rm = soldest;
-		if((rm == null) || (now - rm.lseen < 10))
+		if((rm == null) || ((now - rm.lseen < 10) && (nrendered <= MAXRENDERED)))
 		    break;
-		rm.clear();
+		rm.release();
 	    }
 	}
 
@@ -319,8 +339,7 @@ public class ChatUI extends Widget {
 		bw = new BufferedWriter(fw);
 		log = new PrintWriter(bw);
 		String date = new SimpleDateFormat("yyyy-MM-dd HH.mm.ss").format(new Date(System.currentTimeMillis()));
-		log.println(String.format("----- NEW SESSION (%s) -----", date));
-		log.flush();
+		LogWriter.submit(log, String.format("----- NEW SESSION (%s) -----", date));
 	    } catch (IOException ignored) {
 	    }
 	}
@@ -331,20 +350,83 @@ public class ChatUI extends Widget {
 	    }
 	    if(log != null) {
 		String text = msg.message();
-		if(text != null) {
-		    log.println(text);
-		    log.flush();
-		}
+		if(text != null)
+		    LogWriter.submit(log, text);
 	    }
 	}
 	
 	protected void closeLog() {
-	    if(log != null) {
-		log.flush();
-		log.close();
-	    }
+	    if(log != null)
+		LogWriter.submit(log, null);
 	    log = null;
 	}
+
+	/* Writes chat logs off the UI thread, flushing each log once
+	 * per batch of lines rather than once per line. A null line
+	 * closes the log. Being a daemon, the writer is not waited for
+	 * on exit, so a shutdown hook writes out whatever it has not
+	 * yet got to. */
+	private static class LogWriter extends HackThread {
+	    private static LogWriter cur = null;
+	    private final BlockingQueue<Pair<PrintWriter, String>> queue = new LinkedBlockingQueue<>();
+
+	    private LogWriter() {
+		super("Chat log writer");
+		setDaemon(true);
+	    }
+
+	    static void submit(PrintWriter out, String line) {
+		LogWriter w;
+		synchronized(LogWriter.class) {
+		    if(cur == null) {
+			cur = new LogWriter();
+			cur.start();
+			Runtime.getRuntime().addShutdownHook(new HackThread(cur::drain, "Chat log flusher"));
+		    }
+		    w = cur;
+		}
+		w.queue.add(new Pair<>(out, line));
+	    }
+
+	    private static void write(List<Pair<PrintWriter, String>> batch) {
+		Set<PrintWriter> written = new HashSet<>();
+		for(Pair<PrintWriter, String> ent : batch) {
+		    if(ent.b == null) {
+			ent.a.close();
+			written.remove(ent.a);
+		    } else {
+			ent.a.println(ent.b);
+			written.add(ent.a);
+		    }
+		}
+		for(PrintWriter out : written)
+		    out.flush();
+		batch.clear();
+	    }
+
+	    public void run() {
+		List<Pair<PrintWriter, String>> batch = new ArrayList<>();
+		try {
+		    while(true) {
+			batch.add(queue.take());
+			queue.drainTo(batch);
+			write(batch);
+		    }
+		} catch(InterruptedException e) {
+		}
+	    }
+
+	    private void drain() {
+		interrupt();
+		try {
+		    join(1000);
+		} catch(InterruptedException e) {
+		}
+		List<Pair<PrintWriter, String>> batch = new ArrayList<>();
+		queue.drainTo(batch);
+		write(batch);
+	    }
+	}
 	
 	@Override
 	public void destroy() {
@@ -354,7 +436,7 @@ public class ChatUI extends Widget {
 	
 	public void append(Message msg, int urgency) {
 	    synchronized(rmsgs) {
-		RenderedMessage rm = new RenderedMessage(msg, rmsgs.size(), iw());
+		RenderedMessage rm = new RenderedMessage(msg, base + rmsgs.size(), iw());
 		if(rmsgs.isEmpty()) {
 		    rm.y = 0;
 		} else {
@@ -366,6 +448,7 @@ public class ChatUI extends Widget {
 		sb.max = rm.y + rm.h() - ih();
 		if(b)
 		    sb.val = sb.max;
+		trimhist();
 	    }
 	    getparent(ChatUI.class).notify(this, msg, urgency);
 	    updurgency(Math.max(this.urgency, urgency));
@@ -378,6 +461,31 @@ public class ChatUI extends Widget {
 	    append(msg, 0);
 	}
 
+	/* Trims the history in batches, so that appending stays cheap
+	 * on average. */
+	private void trimhist() {
+	    int max = maxmsgs.get();
+	    if(rmsgs.size() <= max + (max / 8))
+		return;
+	    List<RenderedMessage> old = rmsgs.subList(0, rmsgs.size() - max);
+	    for(RenderedMessage rm : old)
+		rm.invalidate();
+	    base += old.size();
+	    old.clear();
+	    for(CharPos p : new CharPos[] {selorig, lasthit, selstart, selend}) {
+		if((p != null) && (p.rm.idx < base)) {
+		    selorig = lasthit = selstart = selend = null;
+		    break;
+		}
+	    }
+	    int dh = rmsgs.get(0).y;
+	    for(RenderedMessage rm : rmsgs)
+		rm.y -= dh;
+	    sb.max -= dh;
+	    sb.val = Math.max(sb.val - dh, sb.min);
+	    dy = Math.max(dy - dh, sb.min);
+	}
+
 	public void append(String line, Color col) {
 	    append(new SimpleMessage(line, col));
 	}
@@ -687,7 +795,7 @@ public class ChatUI extends Widget {
 	    StringBuilder buf = new StringBuilder();
 	    synchronized(rmsgs) {
 		for(int mi = start.rm.idx; mi <= end.rm.idx; mi++) {
-		    RenderedMessage rm = rmsgs.get(mi);
+		    RenderedMessage rm = message(mi);
 		    if(!(rm.text() instanceof RichText))
 			continue;
 		    RichText rt = (RichText)rm.text();
@@ -42,6 +42,7 @@ public class Composited implements RenderTree.Node, EquipTarget {
     public List<ED> cequ = new LinkedList<ED>();
     public Sprite.Owner eqowner = null;
     private final Collection<RenderTree.Slot> slots = new ArrayList<>(1);
+    private AnimLOD lod = null;
 
     public class Poses {
 	public final PoseMod[] mods;
@@ -101,15 +102,24 @@ public class Composited implements RenderTree.Node, EquipTarget {
 	    }
 	    if(!stat)
 		build = true;
+	    /* Static poses are not rebuilt again after their blend
+	     * ends, so neither they nor the end of a blend may be
+	     * skipped, or a frozen model would keep its old pose. */
+	    boolean force = stat;
 	    if(ipold > 0.0f) {
 		if((ipold -= (dt / ipol)) < 0.0f) {
 		    ipold = 0.0f;
 		    old = null;
+		    force = true;
 		}
 		build = true;
 	    }
-	    if(build)
-		rebuild();
+	    if(build) {
+		if(lod == null)
+		    lod = new AnimLOD(eqowner);
+		if(lod.due(dt) || force)
+		    rebuild();
+	    }
 	    if(done)
 		done();
 	}
@@ -31,13 +31,15 @@ import java.io.*;
 import java.net.*;
 import java.nio.*;
 import java.nio.channels.*;
+import java.nio.file.*;
 
 public class Connection {
     private static final double ACK_HOLD = 0.030;
     private static final double OBJACK_HOLD = 0.08, OBJACK_HOLD_MAX = 0.5;
+    public static final Config.Variable<Path> capture = Config.Variable.propp("haven.capture", "");
     public final SocketAddress server;
     public final String username;
-    private final Collection<Callback> cbs = new ArrayList<>();
+    protected final Collection<Callback> cbs = new ArrayList<>();
     private final DatagramChannel sk;
     private final Selector sel;
     private final SelectionKey key;
@@ -66,6 +68,15 @@ public class Connection {
 	}
     }
 
+    /* For connections not backed by a socket, such as replays. */
+    protected Connection(String username) {
+	this.server = null;
+	this.username = username;
+	this.sk = null;
+	this.sel = null;
+	this.key = null;
+    }
+
     public static interface Callback {
 	public default void closed() {};
 	public default void handle(PMessage msg) {};
@@ -88,6 +99,82 @@ public class Connection {
 	return(this);
     }
 
+    /* Records everything handed to the callbacks after it, along
+     * with the time it was received, so that it can be fed back
+     * by ReplayConnection. Data is read without consuming it, so
+     * the capture must be added before any other callback that
+     * reads the messages it is given. */
+    public static class Capture implements Callback {
+	public static final String MAGIC = "Haven capture 1";
+	public static final int CAP_CLOSE = 0, CAP_REL = 1, CAP_OBJ = 2, CAP_MAP = 3;
+	private final StreamMessage out;
+	private final double start = Utils.rtime();
+	private boolean closed = false;
+
+	public Capture(OutputStream out) {
+	    this.out = new StreamMessage(out);
+	    this.out.addstring(MAGIC);
+	}
+
+	public Capture(Path path) throws IOException {
+	    this(new BufferedOutputStream(Files.newOutputStream(path)));
+	}
+
+	private void head(int kind) {
+	    out.adduint8(kind);
+	    out.adduint32((long)((Utils.rtime() - start) * 1000));
+	}
+
+	private void data(Message msg) {
+	    out.addint32(msg.rt - msg.rh);
+	    out.addbytes(msg.rbuf, msg.rh, msg.rt - msg.rh);
+	}
+
+	public void handle(PMessage msg) {
+	    synchronized(this) {
+		if(closed)
+		    return;
+		head(CAP_REL);
+		out.adduint8(msg.type);
+		data(msg);
+	    }
+	}
+
+	public void handle(OCache.ObjDelta delta) {
+	    synchronized(this) {
+		if(closed)
+		    return;
+		head(CAP_OBJ);
+		out.adduint8(delta.fl).adduint32(delta.id).addint32(delta.frame).addint32(delta.initframe);
+		out.adduint8(delta.rem ? 1 : 0);
+		for(OCache.AttrDelta attr : delta.attrs) {
+		    out.adduint8(attr.type);
+		    data(attr);
+		}
+		out.adduint8(OCache.OD_END);
+	    }
+	}
+
+	public void mapdata(Message msg) {
+	    synchronized(this) {
+		if(closed)
+		    return;
+		head(CAP_MAP);
+		data(msg);
+	    }
+	}
+
+	public void closed() {
+	    synchronized(this) {
+		if(closed)
+		    return;
+		head(CAP_CLOSE);
+		closed = true;
+		out.close();
+	    }
+	}
+    }
+
     private class Worker extends HackThread {
 	private Task init;
 	
@@ -278,7 +365,25 @@ public class Connection {
 	private short rseq, ackseq;
 	private double acktime = -1;
 	private byte[] fragbuf = null;
-	private int fragtype;
+	private int fraglen, fragtype, fraghint = 1024;
+
+	/* Fragments are appended in place into a geometrically grown
+	 * buffer, sized initially after a running average of recent
+	 * message sizes, so that one huge message does not inflate
+	 * every later one. The finished message takes ownership of
+	 * the buffer (callbacks may well retain it), so it is not
+	 * reused, and is trimmed if too much of it went unused. */
+	private void fragadd(PMessage msg) {
+	    int n = msg.rem();
+	    if(fragbuf.length - fraglen < n) {
+		int nl = fragbuf.length * 2;
+		while(nl - fraglen < n)
+		    nl *= 2;
+		fragbuf = Arrays.copyOf(fragbuf, nl);
+	    }
+	    msg.bytes(fragbuf, fraglen, n);
+	    fraglen += n;
+	}
 
 	private void handlerel(PMessage msg) {
 	    if(msg.type == RMessage.RMSG_FRAGMENT) {
@@ -286,18 +391,20 @@ public class Connection {
 		if((head & 0x80) == 0) {
 		    if(fragbuf != null)
 			throw(new Session.MessageException("Got start fragment while still defragmenting", msg));
-		    fragbuf = msg.bytes();
+		    fragbuf = new byte[Math.max(fraghint, msg.rem() * 2)];
+		    fraglen = 0;
 		    fragtype = head;
+		    fragadd(msg);
 		} else {
 		    if((head == 0x80) || (head == 0x81)) {
-			byte[] frag = msg.bytes();
-			byte[] curbuf = fragbuf;
-			byte[] newbuf = new byte[curbuf.length + frag.length];
-			System.arraycopy(curbuf, 0, newbuf, 0, curbuf.length);
-			System.arraycopy(frag, 0, newbuf, curbuf.length, frag.length);
-			fragbuf = newbuf;
+			if(fragbuf == null)
+			    throw(new Session.MessageException("Got continuation fragment without start fragment", msg));
+			fragadd(msg);
 			if(head == 0x81) {
-			    PMessage nmsg = new PMessage(fragtype, fragbuf);
+			    if(fragbuf.length - fraglen > Math.max(fraglen >> 2, 256))
+				fragbuf = Arrays.copyOf(fragbuf, fraglen);
+			    PMessage nmsg = new PMessage(fragtype, fragbuf, 0, fraglen);
+			    fraghint = Utils.clip(((fraghint * 3) + fraglen) / 4, 1024, 1 << 20);
 			    fragbuf = null;
 			    handlerel(nmsg);
 			}
@@ -350,7 +457,7 @@ public class Connection {
 		cb.mapdata(msg);
 	}
 
-	private void gotobjdata(Message msg) {
+	private void gotobjdata(PMessage msg) {
 	    while(!msg.eom()) {
 		int fl = msg.uint8();
 		long id = msg.uint32();
@@ -378,7 +485,7 @@ public class Connection {
 			    len = msg.uint16();
 			}
 		    }
-		    OCache.AttrDelta attr = new OCache.AttrDelta(delta, type, msg, len);
+		    OCache.AttrDelta attr = OCache.AttrDelta.slice(delta, type, msg, len);
 		    if(type == OCache.OD_REM) {
 			delta.rem = true;
 		    } else {
@@ -89,6 +89,7 @@ public class CraftDBWnd extends WindowX implements ICraftParent {
     
     public CraftDBWnd() {
 	super(WND_SZ.add(UI.scale(0, 5)), "Craft window");
+	cachedraw = true;
 	CFG.REAL_TIME_CURIO.observe(cfg -> updateDescription(descriptionPagina));
 	CFG.SHOW_CURIO_LPH.observe(cfg -> updateDescription(descriptionPagina));
     }
@@ -472,6 +473,7 @@ public class CraftDBWnd extends WindowX implements ICraftParent {
 	}
 	if(needfilter) {
 	    filter();
+	    damage();
 	}
     }
     
@@ -35,7 +35,7 @@ public class Defer extends ThreadGroup {
     private static final Map<ThreadGroup, Defer> groups = new WeakHashMap<ThreadGroup, Defer>();
     private final Queue<Future<?>> queue = new PrioQueue<Future<?>>();
     private final Collection<Thread> pool = new LinkedList<Thread>();
-    private final int maxthreads = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+    private final int maxthreads;
     private final AtomicInteger busy = new AtomicInteger(0);
     
     public interface Callable<T> {
@@ -273,8 +273,13 @@ public class Defer extends ThreadGroup {
 	}
     }
 
+    public Defer(ThreadGroup parent, String name, int maxthreads) {
+	super(parent, name);
+	this.maxthreads = maxthreads;
+    }
+
     public Defer(ThreadGroup parent) {
-	super(parent, "DPC threads");
+	this(parent, "DPC threads", Math.max(2, Runtime.getRuntime().availableProcessors() - 1));
     }
 
     private void defer(final Future<?> f) {
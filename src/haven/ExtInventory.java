@@ -167,6 +167,7 @@ public class ExtInventory extends Widget {
 	    && tmp instanceof WindowX) {
 	
 	    wnd = (WindowX) tmp;
+	    wnd.cachedraw = true;
 	    disabled = disabled || needDisableExtraInventory(wnd.caption());
 	    boolean vis = !disabled && wnd.cfg.getValue(CFG_SHOW, false);
 	    showInv = wnd.cfg.getValue(CFG_INV, true);
@@ -296,6 +297,7 @@ public class ExtInventory extends Widget {
 	    inv.forEachItem((g, w) -> processItem(groups, w));
 	    this.groups = groups;
 	    list.changed();
+	    damage();
 	}
 	if(once) {
 	    once = false;
@@ -683,6 +685,7 @@ public class ExtInventory extends Widget {
 		    groups = ExtInventory.this.groups.entrySet().stream()
 			.map(v -> new ItemsGroup(ExtInventory.this, v.getKey(), v.getValue(), ui, grouping.sel)).collect(Collectors.toList());
 		}
+		damage();
 	    }
 	    needsUpdate = false;
 	    super.tick(dt);
@@ -55,6 +55,8 @@ public class GItem extends AWidget implements ItemInfo.SpriteOwner, GSprite.Owne
     private GSprite spr;
     private ItemInfo.Raw rawinfo;
     private List<ItemInfo> info = Collections.emptyList();
+    private ItemInfoCache.Entry infoent = null;
+    private ItemIndex.Doc doc = null;
     private boolean matches = false;
     public boolean sendttupdate = false;
     private long filtered = 0;
@@ -281,8 +283,9 @@ public class GItem extends AWidget implements ItemInfo.SpriteOwner, GSprite.Owne
     
     public void testMatch() {
 	try {
+	    ItemIndex.global.update(this, doc());
 	    if(filtered < lastFilter && spr != null) {
-		matches = filter != null && filter.matches(info());
+		matches = filter != null && ItemIndex.global.matches(filter, this);
 		filtered = lastFilter;
 		List<Action0> listeners;
 		synchronized (matchListeners) {
@@ -307,17 +310,57 @@ public class GItem extends AWidget implements ItemInfo.SpriteOwner, GSprite.Owne
 
     public List<ItemInfo> info() {
 	if(this.info == null) {
+	    Resource res = this.res.get();
+	    /* Contents and debug info are per-item, so only items
+	     * without either share their info. */
+	    Session ctx = ((contents == null) && !ItemData.DBG && (ui != null)) ? ui.sess : null;
+	    ItemInfoCache.Entry ent = ItemInfoCache.get(ctx, res, rawinfo);
+	    if(ent != null) {
+		this.infoent = ent;
+		this.info = ent.info;
+		return(this.info);
+	    }
+	    Resource.Pagina pg = res.layer(Resource.pagina);
+	    ItemInfoCache.Owner shared = ItemInfoCache.owner(ctx, res, this);
+	    if(shared != null) {
+		List<ItemInfo> info = ItemInfo.buildinfo(shared, rawinfo);
+		if(pg != null)
+		    info.add(new ItemInfo.Pagina(shared, pg.text));
+		if((ent = ItemInfoCache.put(shared, res, rawinfo, info)) != null) {
+		    this.infoent = ent;
+		    this.info = ent.info;
+		    return(this.info);
+		}
+	    }
 	    List<ItemInfo> info = ItemInfo.buildinfo(this, rawinfo);
 	    addcontinfo(info);
-	    Resource.Pagina pg = res.get().layer(Resource.pagina);
 	    if(pg != null)
 		info.add(new ItemInfo.Pagina(this, pg.text));
 	    if(ItemData.DBG) {info.add(new ItemData.DebugInfo(this));}
+	    this.infoent = null;
 	    this.info = info;
 	}
 	return(this.info);
     }
 
+    /* The current info as seen by item filters, shared along
+     * with the info itself. */
+    public ItemIndex.Doc doc() {
+	List<ItemInfo> info = info();
+	ItemIndex.Doc doc = this.doc;
+	if((doc == null) || (doc.info != info)) {
+	    ItemInfoCache.Entry ent = infoentry();
+	    this.doc = doc = (ent != null) ? ent.doc() : new ItemIndex.Doc(info);
+	}
+	return(doc);
+    }
+
+    /* The shared cache entry of the current info, or null if it
+     * is not shared. */
+    public ItemInfoCache.Entry infoentry() {
+	return((info == null) ? null : infoent);
+    }
+
     public Resource resource() {
 	return(res.get());
     }
@@ -468,6 +511,11 @@ public class GItem extends AWidget implements ItemInfo.SpriteOwner, GSprite.Owne
 	super.destroy();
     }
 
+    public void dispose() {
+	ItemIndex.global.remove(this);
+	super.dispose();
+    }
+
     public void hovering(Widget hovering) {
 	this.hovering = hovering;
 	this.hoverset = true;
@@ -283,12 +283,23 @@ public interface GLPanel extends UIPanel, UI.Context {
 	    if((map != null) && (map.back != null)) {
 		FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "Camera: %s", map.camstats());
 		FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "Mapview: %s", map.stats());
+		FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "Picking: %s", map.pickstats());
+		FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "Anim LOD: %s", AnimLOD.stats());
 		// FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "Click: Map: %s, Obj: %s", map.clmaplist.stats(), map.clobjlist.stats());
 	    }
+	    if(ui.sess != null)
+		FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "Objects: %s", ui.sess.glob.oc.stats());
 	    FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "Async: L %s, D %s", ui.loader.stats(), Defer.gstats());
 	    int rqd = Resource.local().qdepth() + Resource.remote().qdepth();
 	    if(rqd > 0)
-		FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "RQ depth: %d (%d)", rqd, Resource.local().numloaded() + Resource.remote().numloaded());
+		FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "RQ depth: %d (%d), %s", rqd, Resource.local().numloaded() + Resource.remote().numloaded(), Resource.remote().stats());
+	    FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "SFX cache: %s", Audio.pcmcache().stats());
+	    FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "Item info: %s", ItemInfoCache.stats());
+	    FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "Item index: %s", ItemIndex.global.stats());
+	    for(Widget w = ui.root; w != null; w = w.rnext()) {
+		if((w instanceof Window) && ((Window)w).cachedraw && w.tvisible())
+		    FastText.aprintf(g, new Coord(10, y -= dy), 0, 1, "UI cache: %s", ((Window)w).cachestats());
+	    }
 	    synchronized(Debug.framestats) {
 		for(Object line : Debug.framestats)
 		    FastText.aprint(g, new Coord(10, y -= dy), 0, 1, String.valueOf(line));
@@ -418,6 +429,7 @@ public interface GLPanel extends UIPanel, UI.Context {
 		    }
 		    env.submit(buf);
 		    buf = null;
+		    FrameStats.global.frame();
 		    if(curf != null) curf.tick("aux");
 
 		    double now = Utils.rtime();
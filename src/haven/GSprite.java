@@ -95,6 +95,23 @@ public abstract class GSprite implements Drawn {
     public void tick(double dt) {
     }
 
+    private static final ClassValue<Boolean> ticks = new ClassValue<Boolean>() {
+	public Boolean computeValue(Class<?> cl) {
+	    try {
+		return(cl.getMethod("tick", Double.TYPE).getDeclaringClass() != GSprite.class);
+	    } catch(NoSuchMethodException e) {
+		throw(new AssertionError(e));
+	    }
+	}
+    };
+
+    /* Whether the last tick may have changed how the sprite draws,
+     * for widgets that cache their drawing. Sprites that don't say
+     * are assumed to, if they tick at all. */
+    public boolean animating() {
+	return(ticks.get(getClass()));
+    }
+
     public boolean same(Object obj) {
 	if(obj instanceof GSprite) {
 	    Message msg2 = ((GSprite) obj).msg;
@@ -294,6 +294,7 @@ public class GameUI extends ConsoleHost implements Console.Directory, UI.Notice.
     private final Coord minimapc;
     private final Coord menugridc;
     public GameUI(String chrid, long plid, String genus) {
+	ResTrace.context("game");
 	this.chrid = chrid;
 	this.plid = plid;
 	this.genus = genus;
@@ -372,6 +373,8 @@ public class GameUI extends ConsoleHost implements Console.Directory, UI.Notice.
 	untrackAllMarkers();
 	super.destroy();
 	ui.clearGUI(this);
+	ItemInfoCache.clear();
+	ItemIndex.global.clear();
     }
     
     private static void closeWindow(Window wnd) { if(wnd != null) {wnd.close();} }
@@ -1056,6 +1059,16 @@ public class GameUI extends ConsoleHost implements Console.Directory, UI.Notice.
 	    ResCache mapstore = ResCache.global;
 	    if(MapFile.mapbase.get() != null)
 		mapstore = HashDirCache.get(MapFile.mapbase.get());
+	    /* A log left behind by another client that is still running
+	     * must be used all the same, or this client's writes would
+	     * be shadowed by its entries. */
+	    if((mapstore != null) && (LogStore.enabled.get() || !LogStore.discard(mapstore))) {
+		try {
+		    mapstore = LogStore.get(mapstore);
+		} catch(java.io.IOException e) {
+		    new Warning(e, "could not open map log store, using the plain cache").issue();
+		}
+	    }
 	    if(mapstore != null) {
 		MapFile file;
 		try {
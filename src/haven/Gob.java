@@ -51,7 +51,8 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
     public boolean removed = false;
     public final Glob glob;
     private boolean disposed = false;
-    final Map<Class<? extends GAttrib>, GAttrib> attr = new HashMap<Class<? extends GAttrib>, GAttrib>();
+    private final Object attrlock = new Object();
+    private volatile AttrSet attr = AttrSet.empty;
     public final Collection<Overlay> ols = new ArrayList<Overlay>();
     public final Collection<RenderTree.Slot> slots = new ArrayList<>(1);
     public int updateseq = 0;
@@ -69,7 +70,7 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
     private StatusUpdates status = new StatusUpdates();
     private final CustomColor customColor = new CustomColor();
     private final GobCustomScale customScale = new GobCustomScale();
-    private final Set<GobTag> tags = new HashSet<>();
+    private final Set<GobTag> tags = EnumSet.noneOf(GobTag.class);
     public boolean drivenByPlayer = false;
     public boolean mapProcessed = false;
     private long vehicleId = 0;
@@ -525,16 +526,68 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 	this(glob, c, -1);
     }
     
-    private Map<Class<? extends GAttrib>, GAttrib> cloneattrs() {
-	synchronized (this.attr) {
-	    return new HashMap<>(this.attr);
+    /* An immutable set of attributes, keyed by attribute class. It
+     * is replaced as a whole whenever an attribute is set, which is
+     * rare next to how often attributes are looked up and iterated,
+     * so that neither needs to copy or lock anything. */
+    public static final class AttrSet {
+	public static final AttrSet empty = new AttrSet(new Class<?>[0], new GAttrib[0]);
+	private final Class<?>[] cls;
+	private final GAttrib[] val;
+
+	private AttrSet(Class<?>[] cls, GAttrib[] val) {
+	    this.cls = cls;
+	    this.val = val;
+	}
+
+	public int size() {return(val.length);}
+	public Class<? extends GAttrib> key(int i) {return(cls[i].asSubclass(GAttrib.class));}
+	public GAttrib get(int i) {return(val[i]);}
+
+	public GAttrib get(Class<?> c) {
+	    for(int i = 0; i < cls.length; i++) {
+		if(cls[i] == c)
+		    return(val[i]);
+	    }
+	    return(null);
+	}
+
+	public AttrSet with(Class<?> c, GAttrib a) {
+	    int n = cls.length;
+	    for(int i = 0; i < n; i++) {
+		if(cls[i] == c) {
+		    if(a != null) {
+			GAttrib[] nval = Arrays.copyOf(val, n);
+			nval[i] = a;
+			return(new AttrSet(cls, nval));
+		    }
+		    Class<?>[] ncls = new Class<?>[n - 1];
+		    GAttrib[] nval = new GAttrib[n - 1];
+		    System.arraycopy(cls, 0, ncls, 0, i);
+		    System.arraycopy(cls, i + 1, ncls, i, n - i - 1);
+		    System.arraycopy(val, 0, nval, 0, i);
+		    System.arraycopy(val, i + 1, nval, i, n - i - 1);
+		    return(new AttrSet(ncls, nval));
+		}
+	    }
+	    if(a == null)
+		return(this);
+	    Class<?>[] ncls = Arrays.copyOf(cls, n + 1);
+	    GAttrib[] nval = Arrays.copyOf(val, n + 1);
+	    ncls[n] = c;
+	    nval[n] = a;
+	    return(new AttrSet(ncls, nval));
 	}
     }
-    
+
+    public AttrSet attrs() {
+	return(attr);
+    }
+
     public void ctick(double dt) {
-	Map<Class<? extends GAttrib>, GAttrib> attr = cloneattrs();
-	for(GAttrib a : attr.values())
-	    a.ctick(dt);
+	AttrSet attr = this.attr;
+	for(int i = 0; i < attr.size(); i++)
+	    attr.get(i).ctick(dt);
 	for(Iterator<Overlay> i = ols.iterator(); i.hasNext();) {
 	    Overlay ol = i.next();
 	    if(ol.slots == null) {
@@ -739,9 +792,9 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
     }
     
     public void tick() {
-	Map<Class<? extends GAttrib>, GAttrib> attr = cloneattrs();
-	for (GAttrib a : attr.values())
-	    a.tick();
+	AttrSet attr = this.attr;
+	for(int i = 0; i < attr.size(); i++)
+	    attr.get(i).tick();
     }
     
     public void waitRemoval() throws InterruptedException {
@@ -764,8 +817,9 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 	    disposed = true;
 	    removalLock.notifyAll();
 	}
-	Map<Class<? extends GAttrib>, GAttrib> attr = cloneattrs();
-	for(GAttrib a : attr.values()) {
+	AttrSet attr = this.attr;
+	for(int i = 0; i < attr.size(); i++) {
+	    GAttrib a = attr.get(i);
 	    if(a instanceof Moving) {updateMovingInfo(null, a);}
 	    a.dispose();
 	}
@@ -781,6 +835,8 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 	}
 	this.rc = c;
 	this.a = a;
+	if((glob != null) && (glob.oc != null))
+	    glob.oc.index.moved(this);
     }
     
     public Boolean isMe() {
@@ -855,28 +911,36 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 	return(tile.drawstate(glob, pc));
     }
 
-    private Class<? extends GAttrib> attrclass(Class<? extends GAttrib> cl) {
-	while(true) {
-	    Class<?> p = cl.getSuperclass();
-	    if(p == GAttrib.class)
-		return(cl);
-	    cl = p.asSubclass(GAttrib.class);
-	}
+    private static final ClassValue<Class<? extends GAttrib>> attrclasses = new ClassValue<Class<? extends GAttrib>>() {
+	    protected Class<? extends GAttrib> computeValue(Class<?> c) {
+		Class<? extends GAttrib> cl = c.asSubclass(GAttrib.class);
+		while(true) {
+		    Class<?> p = cl.getSuperclass();
+		    if(p == GAttrib.class)
+			return(cl);
+		    cl = p.asSubclass(GAttrib.class);
+		}
+	    }
+	};
+
+    private static Class<? extends GAttrib> attrclass(Class<? extends GAttrib> cl) {
+	return(attrclasses.get(cl));
     }
 
     public <C extends GAttrib> C getattr(Class<C> c) {
-	synchronized (attr) {
-	    GAttrib attr = this.attr.get(attrclass(c));
-	    if(!c.isInstance(attr))
-		return (null);
-	    return (c.cast(attr));
-	}
+	GAttrib attr = this.attr.get(attrclass(c));
+	if(!c.isInstance(attr))
+	    return (null);
+	return (c.cast(attr));
     }
 
     private void setattr(Class<? extends GAttrib> ac, GAttrib a) {
 	GAttrib prev;
-	synchronized (attr) {
-	    prev = attr.remove(ac);
+	synchronized (attrlock) {
+	    /* Readers do not take the lock, so the new set is only
+	     * published once it is complete. */
+	    AttrSet base = attr.with(ac, null);
+	    prev = attr.get(ac);
 	    if(prev != null) {
 		if((prev instanceof RenderTree.Node) && (prev.slots != null))
 		    RUtils.multirem(new ArrayList<>(prev.slots));
@@ -888,18 +952,22 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 		    try {
 			RUtils.multiadd(this.slots, (RenderTree.Node) a);
 		    } catch (Loading l) {
+			AttrSet restored = base;
 			if(prev instanceof RenderTree.Node && !prev.skipRender) {
 			    RUtils.multiadd(this.slots, (RenderTree.Node) prev);
-			    attr.put(ac, prev);
+			    restored = base.with(ac, prev);
 			}
 			if(prev instanceof SetupMod)
 			    setupmods.add((SetupMod) prev);
+			attr = restored;
 			throw (l);
 		    }
 		}
 		if(a instanceof SetupMod)
 		    setupmods.add((SetupMod) a);
-		attr.put(ac, a);
+		attr = base.with(ac, a);
+	    } else {
+		attr = base;
 	    }
 	    if(prev != null)
 		prev.dispose();
@@ -926,7 +994,9 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
     }
 
     public Supplier<? extends Pipe.Op> eqpoint(String nm, Message dat) {
-	for(GAttrib attr : this.attr.values()) {
+	AttrSet attrs = this.attr;
+	for(int i = 0; i < attrs.size(); i++) {
+	    GAttrib attr = attrs.get(i);
 	    if(attr instanceof EquipTarget) {
 		Supplier<? extends Pipe.Op> ret = ((EquipTarget)attr).eqpoint(nm, dat);
 		if(ret != null)
@@ -1048,8 +1118,9 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
 	    if(ol.slots != null)
 		slot.add(ol);
 	}
-	Map<Class<? extends GAttrib>, GAttrib> attr = cloneattrs();
-	for(GAttrib a : attr.values()) {
+	AttrSet attr = this.attr;
+	for(int i = 0; i < attr.size(); i++) {
+	    GAttrib a = attr.get(i);
 	    if(a instanceof RenderTree.Node && !a.skipRender)
 		slot.add((RenderTree.Node) a);
 	}
@@ -1676,9 +1747,7 @@ public class Gob implements RenderTree.Node, Sprite.Owner, Skeleton.ModOwner, Eq
     }
     
     public KinInfo kin() {
-	synchronized (attr) {
-	    return KinInfo.from(this, attr);
-	}
+	return KinInfo.from(this, attr);
     }
     
     public float scale() {return info.growthScale();}
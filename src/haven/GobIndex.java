@@ -0,0 +1,192 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven;
+
+import java.util.*;
+import java.util.function.*;
+
+/* A uniform grid over the positions of the gobs in an OCache, kept
+ * up to date as gobs are added, moved and removed, for finding gobs
+ * near some point without scanning all of them. Filters are only
+ * ever run outside the index lock. */
+public class GobIndex {
+    public static final double CELL = 110.0;
+    private static final long NONE = Long.MIN_VALUE;
+    private final Map<Long, List<Gob>> cells = new HashMap<>();
+    private final Map<Gob, Long> where = new IdentityHashMap<>();
+    /* Only ever grows, which is good enough to bound searches. */
+    private int minx = Integer.MAX_VALUE, miny = Integer.MAX_VALUE, maxx = Integer.MIN_VALUE, maxy = Integer.MIN_VALUE;
+
+    private static long cell(int x, int y) {
+	return((((long)x) << 32) | (y & 0xffffffffL));
+    }
+
+    private static int ci(double v) {
+	return((int)Math.floor(v / CELL));
+    }
+
+    private static long cell(Coord2d c) {
+	return(cell(ci(c.x), ci(c.y)));
+    }
+
+    private void put(Gob g, long cell) {
+	cells.computeIfAbsent(cell, k -> new ArrayList<>(4)).add(g);
+	where.put(g, cell);
+	int x = (int)(cell >> 32), y = (int)cell;
+	minx = Math.min(minx, x); maxx = Math.max(maxx, x);
+	miny = Math.min(miny, y); maxy = Math.max(maxy, y);
+    }
+
+    private synchronized boolean beyond(int cx, int cy, int r) {
+	return((cx - r <= minx) && (cx + r >= maxx) && (cy - r <= miny) && (cy + r >= maxy));
+    }
+
+    private void take(Gob g, long cell) {
+	List<Gob> l = cells.get(cell);
+	if(l != null) {
+	    l.remove(g);
+	    if(l.isEmpty())
+		cells.remove(cell);
+	}
+    }
+
+    public synchronized void add(Gob g) {
+	if((g.rc == null) || where.containsKey(g))
+	    return;
+	put(g, cell(g.rc));
+    }
+
+    public synchronized void remove(Gob g) {
+	Long cur = where.remove(g);
+	if(cur != null)
+	    take(g, cur);
+    }
+
+    public synchronized void moved(Gob g) {
+	Long cur = where.get(g);
+	if((cur == null) || (g.rc == null))
+	    return;
+	long nc = cell(g.rc);
+	if(nc != cur) {
+	    take(g, cur);
+	    put(g, nc);
+	}
+    }
+
+    public synchronized int size() {
+	return(where.size());
+    }
+
+    private synchronized void collect(int x1, int y1, int x2, int y2, Collection<Gob> buf) {
+	for(int y = y1; y <= y2; y++) {
+	    for(int x = x1; x <= x2; x++) {
+		List<Gob> l = cells.get(cell(x, y));
+		if(l != null)
+		    buf.addAll(l);
+	    }
+	}
+    }
+
+    /* The cells at Chebyshev distance exactly r from (cx, cy). */
+    private synchronized void ring(int cx, int cy, int r, Collection<Gob> buf) {
+	if(r == 0) {
+	    collect(cx, cy, cx, cy, buf);
+	    return;
+	}
+	collect(cx - r, cy - r, cx + r, cy - r, buf);
+	collect(cx - r, cy + r, cx + r, cy + r, buf);
+	collect(cx - r, cy - r + 1, cx - r, cy + r - 1, buf);
+	collect(cx + r, cy - r + 1, cx + r, cy + r - 1, buf);
+    }
+
+    public List<Gob> area(Coord2d ul, Coord2d br, Predicate<? super Gob> filter) {
+	List<Gob> cand = new ArrayList<>();
+	collect(ci(ul.x), ci(ul.y), ci(br.x), ci(br.y), cand);
+	List<Gob> ret = new ArrayList<>();
+	for(Gob g : cand) {
+	    Coord2d rc = g.rc;
+	    if((rc != null) && (rc.x >= ul.x) && (rc.y >= ul.y) && (rc.x < br.x) && (rc.y < br.y) && filter.test(g))
+		ret.add(g);
+	}
+	return(ret);
+    }
+
+    public List<Gob> within(Coord2d c, double r, Predicate<? super Gob> filter) {
+	List<Gob> cand = new ArrayList<>();
+	collect(ci(c.x - r), ci(c.y - r), ci(c.x + r), ci(c.y + r), cand);
+	List<Gob> ret = new ArrayList<>();
+	for(Gob g : cand) {
+	    Coord2d rc = g.rc;
+	    if((rc != null) && (rc.dist(c) <= r) && filter.test(g))
+		ret.add(g);
+	}
+	return(ret);
+    }
+
+    /* The at most k gobs nearest to c and no further than maxdist,
+     * nearest first. Searches outwards ring by ring, keeping the k
+     * best in a bounded heap, and stops once no unsearched cell can
+     * hold anything nearer than the k:th best. */
+    public List<Gob> nearest(Coord2d c, int k, double maxdist, Predicate<? super Gob> filter) {
+	if(k <= 0)
+	    return(new ArrayList<>());
+	PriorityQueue<Pair<Double, Gob>> best = new PriorityQueue<>(Math.min(k, 64) + 1, (a, b) -> Double.compare(b.a, a.a));
+	int cx = ci(c.x), cy = ci(c.y);
+	double fx = (c.x / CELL) - cx, fy = (c.y / CELL) - cy;
+	/* The nearest any point of a cell in ring r can be. */
+	double edge = Math.min(Math.min(fx, 1 - fx), Math.min(fy, 1 - fy)) * CELL;
+	List<Gob> cand = new ArrayList<>();
+	for(int r = 0;; r++) {
+	    double reach = (r == 0) ? 0 : ((r - 1) * CELL) + edge;
+	    if(reach > maxdist)
+		break;
+	    if((best.size() >= k) && (reach > best.peek().a))
+		break;
+	    cand.clear();
+	    ring(cx, cy, r, cand);
+	    for(Gob g : cand) {
+		Coord2d rc = g.rc;
+		if(rc == null)
+		    continue;
+		double d = rc.dist(c);
+		if((d > maxdist) || ((best.size() >= k) && (d >= best.peek().a)) || !filter.test(g))
+		    continue;
+		best.add(new Pair<>(d, g));
+		if(best.size() > k)
+		    best.poll();
+	    }
+	    if(beyond(cx, cy, r))
+		break;
+	}
+	List<Pair<Double, Gob>> sorted = new ArrayList<>(best);
+	sorted.sort((a, b) -> Double.compare(a.a, b.a));
+	List<Gob> ret = new ArrayList<>(sorted.size());
+	for(Pair<Double, Gob> p : sorted)
+	    ret.add(p.b);
+	return(ret);
+    }
+}
@@ -177,31 +177,20 @@ public enum GobTag {
     private static final boolean DBG = false;
     private static final Set<String> UNKNOWN = new HashSet<>();
     
-    public static Set<GobTag> tags(Gob gob) {
-        Set<GobTag> tags = new HashSet<>();
-        GameUI gui = gob.context(GameUI.class);
-        Glob glob = gob.context(Glob.class);
-        Equipory equipory = gui != null ? gui.equipory : null;
-        Fightview fight = gui != null ? gui.fv : null;
-        
-        String name = gob.resid();
-        int sdt = gob.sdt();
-        if(name != null) {
-            List<String> ols = Collections.emptyList();
-            synchronized (gob.ols) {
-                try {
-                    List<String> list = new ArrayList<>();
-                    for (Gob.Overlay overlay : gob.ols) {
-                        if(overlay != null && overlay.spr != null && overlay.spr.res != null) {
-                            list.add(overlay.spr.res.name);
-                        }
-                    }
-                    ols = list;
-                } catch (Loading e) {
-                    gob.tagsUpdated();
-                }
-            }
+    //how the per-gob state of a resource is read, beyond its name
+    private enum Kind {NONE, PLAYER, DFRAME, TTUB, FURNACE, SMELTER, FORGE, BEEHIVE}
     
+    /* Everything that can be told from the resource name alone,
+     * worked out once per name and shared by all gobs using it. */
+    private static class NameInfo {
+        final EnumSet<GobTag> tags = EnumSet.noneOf(GobTag.class);
+        final Kind kind;
+        final boolean bat, canAggro;
+        final ContainerInfo.Container container;
+        
+        NameInfo(Gob gob, String name) {
+            Kind kind = Kind.NONE;
+            boolean bat = false;
             if(name.startsWith("gfx/terobjs/trees")) {
                 if(name.endsWith("log") || name.endsWith("oldtrunk") || name.contains("/driftwood")) {
                     tags.add(LOG);
@@ -212,35 +201,28 @@ public enum GobTag {
                 }
             } else if(name.startsWith("gfx/terobjs/bushes")) {
                 tags.add(BUSH);
-            } else if(name.startsWith("gfx/terobjs/herbs/") || ofType(name, LIKE_HERB)) {
+            } else if(name.startsWith("gfx/terobjs/herbs/") || M_LIKE_HERB.in(name)) {
                 tags.add(HERB);
             } else if(name.startsWith("gfx/borka/body")) {
                 tags.add(PLAYER);
-                Boolean me = gob.isMe();
-                if(me != null) {
-                    if(me) {
-                        tags.add(ME);
-                    } else {
-			tags.add(KinInfo.isFoe(gob) ? FOE : FRIEND);
-                    }
-                }
-            } else if(name.startsWith("gfx/kritter/") || ofType(name, LIKE_CRITTER)) {
+                kind = Kind.PLAYER;
+            } else if(name.startsWith("gfx/kritter/") || M_LIKE_CRITTER.in(name)) {
                 if(name.contains("/rabbit")) {
                     tags.add(RABBIT);
                 }
                 if(name.endsWith("/midgeswarm")) {
                     tags.add(MIDGES);
-                } else if(ofType(name, CRITTERS)) {
+                } else if(M_CRITTERS.in(name)) {
                     tags.add(ANIMAL);
                     tags.add(CRITTER);
-                } else if(ofType(name, BIG_PARTS)) {
+                } else if(M_BIG_PARTS.in(name)) {
                     //ignore big parts of animals like Orca
-                } else if(ofType(name, AGGRO)) {
+                } else if(M_AGGRO.in(name)) {
                     tags.add(ANIMAL);
                     tags.add(AGGRESSIVE);
-                } else if(ofType(name, ANIMALS)) {
+                } else if(M_ANIMALS.in(name)) {
                     tags.add(ANIMAL);
-                } else if(domesticated(gob, name, tags)) {
+                } else if(domesticated(name, tags)) {
                     tags.add(ANIMAL);
                     tags.add(DOMESTIC);
                 } else if(DBG && !UNKNOWN.contains(name)) {
@@ -248,68 +230,38 @@ public enum GobTag {
                     gob.glob.sess.ui.message(name, GameUI.MsgType.ERROR);
                     System.out.println(name);
                 }
-                if(name.contains("/bat")) {
-                    if(equipory == null || !equipory.hasBatCape()) {
-                        tags.add(AGGRESSIVE);
-                    }
-                }
+                bat = name.contains("/bat");
             } else if(name.startsWith("gfx/terobjs/arch/") && name.endsWith("gate")) {
                 tags.add(GATE);
             } else if(name.endsWith("/dframe")) {
                 tags.add(CONTAINER);
                 tags.add(PROGRESSING);
-                boolean empty = ols.isEmpty();
-                boolean done = !empty && ols.stream().noneMatch(GobTag::isDrying);
-                if(empty) { tags.add(EMPTY); }
-                if(done) { tags.add(READY); }
+                kind = Kind.DFRAME;
             } else if(name.endsWith("/ttub")) {
                 tags.add(CONTAINER);
                 tags.add(PROGRESSING);
-                //sdt bits: 0 - water, 1 - tannin, 2 - hide, 3 - leather
-                boolean empty = (sdt & 0b1100) == 0; //has no hide nor leather
-                boolean done = (sdt & 0b1000) != 0; //has leather
-                if(empty) { tags.add(EMPTY); }
-                if(done) { tags.add(READY); }
+                kind = Kind.TTUB;
             } else if(name.equals(ResName.STACK_FURNACE)) {
                 tags.add(PROGRESSING);
                 tags.add(SMELTER);
-                //sdt bits: 0 - lit, 1 - ore, 2 - bars, 3 - partial heat or pumping, 4 - full heat
-                boolean lit = (sdt & 0b0001) != 0;
-                boolean ore = (sdt & 0b0000_0010) != 0;
-                boolean bars = (sdt & 0b0000_0100) != 0;
-                //boolean cold = (sdt & 0b0001_1000) == 0;
-                boolean hot = (sdt & 0b0001_0000) != 0;
-                if(bars) {tags.add(READY);}
-                if(lit) {
-                    tags.add(LIT);
-                    if(!hot && ore) {tags.add(COLD);}
-                }
+                kind = Kind.FURNACE;
             } else if(name.equals(ResName.ORE_SMELTER)) {
                 tags.add(PROGRESSING);
                 tags.add(SMELTER);
-                //sdt bits: 0 - open; 1 - lit; 2 - melting ore; 3,4,5 - bars; 6 - closed
-                boolean lit = (sdt & 0b0010) != 0;
-                boolean bars = (sdt & 0b0011_1000) != 0;
-                if(bars) {tags.add(READY);}
-                if(lit) {tags.add(LIT);}
+                kind = Kind.SMELTER;
             } else if(name.equals(ResName.FINERY_FORGE)) {
                 tags.add(PROGRESSING);
                 tags.add(SMELTER);
-                //TODO: read sdt flags
-                boolean lit = true;
-                if(lit) {tags.add(LIT);}
+                kind = Kind.FORGE;
             } else if(name.endsWith("/beehive")) {
                 tags.add(PROGRESSING);
-                //sdt bits: 0 - honey, 1 - bees?, 2 - wax
-                //boolean noHoney = (sdt & 1) == 0; //has no honey
-                boolean hasWax = (sdt & 4) != 0; //has wax
-                if(hasWax) {tags.add(READY);}
+                kind = Kind.BEEHIVE;
             } else if(name.endsWith("/gems/gemstone")) {
                 tags.add(GEM);
             } else if(name.endsWith("/wheelbarrow") || name.endsWith("/plow")) {
                 tags.add(PUSHED);
             }
-            if(ofType(name, VEHICLES)) {
+            if(M_VEHICLES.in(name)) {
                 tags.add(VEHICLE);
             }
             if(name.equals("gfx/terobjs/items/arrow")) {
@@ -318,67 +270,172 @@ public enum GobTag {
             if(name.equals("gfx/terobjs/boostspeed")) {
                 tags.add(SPEED);
             }
-            
-            if(ItemData.WATER.equalsIgnoreCase(gob.contents())) {
-                tags.add(HAS_WATER);
-            }
-            
             if(anyOf(tags, HERB, CRITTER, GEM, ARROW)) {
                 tags.add(PICKUP);
             }
-            
             if(anyOf(tags, DOMESTIC, HERB, TREE, BUSH)) {
                 tags.add(MENU);
             }
-            
-            Party.Member member = glob.party.memb.get(gob.id);
-            if(member != null) {
-                tags.add(PARTY);
-            }
-            
-            Party.Member leader = glob.party.leader;
-            if(leader != null && leader.gobid == gob.id) {
-                tags.add(LEADER);
+            this.container = ContainerInfo.get(name).orElse(null);
+            if(container != null) {
+                tags.add(CONTAINER);
             }
-            
-            if(fight != null) {
-                for (Fightview.Relation relation : fight.lsrel) {
-                    if(relation.gobid == gob.id) {
-                        tags.add(IN_COMBAT);
-                        break;
+            this.kind = kind;
+            this.bat = bat;
+            this.canAggro = tags.contains(PLAYER) || M_CAN_AGGRO.in(name);
+        }
+    }
+    
+    private static final Map<String, NameInfo> NAMES = new java.util.concurrent.ConcurrentHashMap<>();
+    
+    public static Set<GobTag> tags(Gob gob) {
+        String name = gob.resid();
+        if(name == null) {
+            return EnumSet.noneOf(GobTag.class);
+        }
+        NameInfo info = NAMES.get(name);
+        if(info == null) {
+            info = NAMES.computeIfAbsent(name, n -> new NameInfo(gob, n));
+        }
+        EnumSet<GobTag> tags = info.tags.clone();
+        GameUI gui = gob.context(GameUI.class);
+        Glob glob = gob.context(Glob.class);
+        Equipory equipory = gui != null ? gui.equipory : null;
+        Fightview fight = gui != null ? gui.fv : null;
+        int sdt = gob.sdt();
+        switch (info.kind) {
+            case PLAYER: {
+                Boolean me = gob.isMe();
+                if(me != null) {
+                    if(me) {
+                        tags.add(ME);
+                    } else {
+                        tags.add(KinInfo.isFoe(gob) ? FOE : FRIEND);
                     }
                 }
-                Fightview.Relation current = fight.current;
-                if(current != null && current.gobid == gob.id) {
-                    tags.add(COMBAT_TARGET);
+                break;
+            }
+            case DFRAME: {
+                List<String> ols = Collections.emptyList();
+                synchronized (gob.ols) {
+                    try {
+                        List<String> list = new ArrayList<>();
+                        for (Gob.Overlay overlay : gob.ols) {
+                            if(overlay != null && overlay.spr != null && overlay.spr.res != null) {
+                                list.add(overlay.spr.res.name);
+                            }
+                        }
+                        ols = list;
+                    } catch (Loading e) {
+                        gob.tagsUpdated();
+                    }
                 }
+                boolean empty = ols.isEmpty();
+                boolean done = !empty && ols.stream().noneMatch(GobTag::isDrying);
+                if(empty) { tags.add(EMPTY); }
+                if(done) { tags.add(READY); }
+                break;
             }
-            
-            if((anyOf(tags, PLAYER) || ofType(name, CAN_AGGRO)) && !anyOf(tags, ME, PARTY, IN_COMBAT, KO, DEAD)) {
-                tags.add(AGGRO_TARGET);
+            case TTUB: {
+                //sdt bits: 0 - water, 1 - tannin, 2 - hide, 3 - leather
+                boolean empty = (sdt & 0b1100) == 0; //has no hide nor leather
+                boolean done = (sdt & 0b1000) != 0; //has leather
+                if(empty) { tags.add(EMPTY); }
+                if(done) { tags.add(READY); }
+                break;
             }
-    
-            ContainerInfo.get(name).ifPresent(container -> {
-                tags.add(CONTAINER);
-                if(container.isFull(sdt)) {
-                    tags.add(FULL);
-                } else if(container.isEmpty(sdt)) {
-                    tags.add(EMPTY);
-                }
-            });
-    
-            Drawable d = gob.drawable;
-            if(d != null) {
-                if(d.hasPose("/knock")) {
-                    tags.add(KO);
-                }
-                if(d.hasPose("/dead") || d.hasPose("/waterdead")) {
-                    tags.add(DEAD);
+            case FURNACE: {
+                //sdt bits: 0 - lit, 1 - ore, 2 - bars, 3 - partial heat or pumping, 4 - full heat
+                boolean lit = (sdt & 0b0001) != 0;
+                boolean ore = (sdt & 0b0000_0010) != 0;
+                boolean bars = (sdt & 0b0000_0100) != 0;
+                //boolean cold = (sdt & 0b0001_1000) == 0;
+                boolean hot = (sdt & 0b0001_0000) != 0;
+                if(bars) {tags.add(READY);}
+                if(lit) {
+                    tags.add(LIT);
+                    if(!hot && ore) {tags.add(COLD);}
                 }
-                if(d.hasPose("drinkan")) {
-                    tags.add(DRINKING);
+                break;
+            }
+            case SMELTER: {
+                //sdt bits: 0 - open; 1 - lit; 2 - melting ore; 3,4,5 - bars; 6 - closed
+                boolean lit = (sdt & 0b0010) != 0;
+                boolean bars = (sdt & 0b0011_1000) != 0;
+                if(bars) {tags.add(READY);}
+                if(lit) {tags.add(LIT);}
+                break;
+            }
+            case FORGE: {
+                //TODO: read sdt flags
+                boolean lit = true;
+                if(lit) {tags.add(LIT);}
+                break;
+            }
+            case BEEHIVE: {
+                //sdt bits: 0 - honey, 1 - bees?, 2 - wax
+                //boolean noHoney = (sdt & 1) == 0; //has no honey
+                boolean hasWax = (sdt & 4) != 0; //has wax
+                if(hasWax) {tags.add(READY);}
+                break;
+            }
+        }
+        if(info.bat) {
+            if(equipory == null || !equipory.hasBatCape()) {
+                tags.add(AGGRESSIVE);
+            }
+        }
+        
+        if(ItemData.WATER.equalsIgnoreCase(gob.contents())) {
+            tags.add(HAS_WATER);
+        }
+        
+        Party.Member member = glob.party.memb.get(gob.id);
+        if(member != null) {
+            tags.add(PARTY);
+        }
+        
+        Party.Member leader = glob.party.leader;
+        if(leader != null && leader.gobid == gob.id) {
+            tags.add(LEADER);
+        }
+        
+        if(fight != null) {
+            for (Fightview.Relation relation : fight.lsrel) {
+                if(relation.gobid == gob.id) {
+                    tags.add(IN_COMBAT);
+                    break;
                 }
             }
+            Fightview.Relation current = fight.current;
+            if(current != null && current.gobid == gob.id) {
+                tags.add(COMBAT_TARGET);
+            }
+        }
+        
+        if(info.container != null) {
+            if(info.container.isFull(sdt)) {
+                tags.add(FULL);
+            } else if(info.container.isEmpty(sdt)) {
+                tags.add(EMPTY);
+            }
+        }
+        
+        Drawable d = gob.drawable;
+        if(d != null) {
+            if(d.hasPose("/knock")) {
+                tags.add(KO);
+            }
+            if(d.hasPose("/dead") || d.hasPose("/waterdead")) {
+                tags.add(DEAD);
+            }
+            if(d.hasPose("drinkan")) {
+                tags.add(DRINKING);
+            }
+        }
+        
+        if(info.canAggro && !anyOf(tags, ME, PARTY, IN_COMBAT, KO, DEAD)) {
+            tags.add(AGGRO_TARGET);
         }
     
         return tags;
@@ -395,7 +452,34 @@ public enum GobTag {
         return false;
     }
     
-    private static boolean domesticated(Gob gob, String name, Set<GobTag> tags) {
+    /* Matches any of a set of substrings in one pass over the name. */
+    private static class Matcher {
+        private final java.util.regex.Pattern re;
+        
+        Matcher(String[] patterns) {
+            StringBuilder buf = new StringBuilder();
+            for (String pattern : patterns) {
+                if(buf.length() > 0) {buf.append('|');}
+                buf.append(java.util.regex.Pattern.quote(pattern));
+            }
+            re = java.util.regex.Pattern.compile(buf.toString());
+        }
+        
+        boolean in(String name) {
+            return re.matcher(name).find();
+        }
+    }
+    
+    private static final Matcher M_AGGRO = new Matcher(AGGRO);
+    private static final Matcher M_BIG_PARTS = new Matcher(BIG_PARTS);
+    private static final Matcher M_ANIMALS = new Matcher(ANIMALS);
+    private static final Matcher M_LIKE_HERB = new Matcher(LIKE_HERB);
+    private static final Matcher M_LIKE_CRITTER = new Matcher(LIKE_CRITTER);
+    private static final Matcher M_CRITTERS = new Matcher(CRITTERS);
+    private static final Matcher M_CAN_AGGRO = new Matcher(CAN_AGGRO);
+    private static final Matcher M_VEHICLES = new Matcher(VEHICLES);
+    
+    private static boolean domesticated(String name, Set<GobTag> tags) {
         if(name.contains("/cattle/")) {
             tags.add(CATTLE);
             //TODO: add distinction between cow and bull
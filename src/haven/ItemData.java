@@ -80,7 +80,7 @@ public class ItemData {
 	imgs.add(RichText.render(String.format("Base FEP: $col[128,255,0]{%s}, FEP/Hunger: $col[128,255,0]{%s}", Utils.odformat2(fepSum, 2), FEPPerHunger(glut, fepSum)), 0).img);
 	
 	//this is not real item, don't add extra info
-	if(!(owner instanceof GItem)) {return;}
+	if(!(owner instanceof GItem) && !(owner instanceof ItemInfoCache.Owner)) {return;}
 	CharacterInfo character = null;
 	CharacterInfo.Constipation constipation = null;
 	try {
@@ -7,6 +7,8 @@ import haven.resutil.FoodInfo;
 import me.ender.ClientUtils;
 import me.ender.Reflect;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -114,12 +116,22 @@ public class ItemFilter {
     public static final String[] FILTER_HELP = {HELP_SIMPLE, HELP_FULL_TEXT, HELP_CONTENT, HELP_QUALITY, HELP_CURIO, HELP_FEP, HELP_ARMOR, HELP_SYMBEL, HELP_ATTR, HELP_INPUTS};
     
     public boolean matches(List<ItemInfo> info) {
-	if(info == null || info.isEmpty()) {return false;}
-	for (ItemInfo item : info) {
+	return matches(new ItemIndex.Doc(info));
+    }
+    
+    public boolean matches(ItemIndex.Doc doc) {
+	if(doc.empty()) {return false;}
+	return test(doc);
+    }
+    
+    /* Tests a non-empty doc. Filters that only look at single infos
+     * can override match instead. */
+    protected boolean test(ItemIndex.Doc doc) {
+	for (ItemInfo item : doc.info) {
 	    if(match(item)) {return true;}
 	}
-	return match(QualityList.make(info));
-
+	List<QualityList> q = doc.qualities();
+	return match(q.get(q.size() - 1));
     }
     
     final public boolean matches(MenuGrid.Pagina pagina) {
@@ -127,6 +139,10 @@ public class ItemFilter {
     }
 
     protected boolean match(ItemInfo item) { return false; }
+    
+    /* The items that can possibly match, or null if the index
+     * cannot narrow them down. */
+    protected Collection<GItem> candidates(ItemIndex index) { return null; }
 
     public static ItemFilter create(String query) {
 	Compound result = new Compound();
@@ -237,13 +253,24 @@ public class ItemFilter {
 	List<ItemFilter> filters = new LinkedList<>();
 
 	@Override
-	public boolean matches(List<ItemInfo> info) {
+	protected boolean test(ItemIndex.Doc doc) {
 	    if(filters.isEmpty()) {return false;}
 	    for (ItemFilter filter : filters) {
-		if(!filter.matches(info)) {return false;}
+		if(!filter.test(doc)) {return false;}
 	    }
 	    return true;
 	}
+	
+	@Override
+	protected Collection<GItem> candidates(ItemIndex index) {
+	    if(filters.isEmpty()) {return Collections.emptySet();}
+	    Collection<GItem> ret = null;
+	    for (ItemFilter filter : filters) {
+		Collection<GItem> c = filter.candidates(index);
+		if(c != null && (ret == null || c.size() < ret.size())) {ret = c;}
+	    }
+	    return ret;
+	}
 
 	public void add(ItemFilter filter) {
 	    filters.add(filter);
@@ -324,12 +351,12 @@ public class ItemFilter {
 	}
 
 	@Override
-	public boolean matches(List<ItemInfo> infos) {
-	    ItemData.Content content = ItemInfo.getContent(infos);
+	protected boolean test(ItemIndex.Doc doc) {
+	    ItemData.Content content = doc.content();
 	    if(!content.empty()) {
 		return content.name.toLowerCase().contains(text) && test(content.count);
 	    }
-	    return match(QualityList.make(infos));
+	    return false;
 	}
 
 	@Override
@@ -356,6 +383,26 @@ public class ItemFilter {
 	    this.text = text.toLowerCase();
 	}
 
+	@Override
+	protected boolean test(ItemIndex.Doc doc) {
+	    if(text == null || text.isEmpty()) {return false;}
+	    for (String name : doc.names()) {
+		if(name.contains(text)) {return true;}
+	    }
+	    if(full) {
+		for (String txt : doc.texts()) {
+		    if(txt.contains(text)) {return true;}
+		}
+	    }
+	    return false;
+	}
+	
+	@Override
+	protected Collection<GItem> candidates(ItemIndex index) {
+	    if(text == null || text.isEmpty()) {return Collections.emptySet();}
+	    return index.named(text, full);
+	}
+
 	@Override
 	protected boolean match(ItemInfo item) {
 	    if(text != null && !text.isEmpty()) {
@@ -378,6 +425,14 @@ public class ItemFilter {
     private static class XP extends Complex {
 	public XP(String text, String sign, String value, String opt) {super(text, sign, value, opt);}
 
+	@Override
+	protected boolean test(ItemIndex.Doc doc) {
+	    for (Curiosity curio : doc.curios()) {
+		if(match(curio)) {return true;}
+	    }
+	    return false;
+	}
+
 	@Override
 	protected boolean match(ItemInfo item) {
 	    if(item instanceof Curiosity) {
@@ -428,12 +483,15 @@ public class ItemFilter {
 	}
     
 	@Override
-	public boolean matches(List<ItemInfo> info) {
-	    QualityList q = ItemInfo.getContent(info).q;
+	protected boolean test(ItemIndex.Doc doc) {
+	    QualityList q = doc.content().q;
 	    if(!q.isEmpty()) {
 		return match(q);
 	    }
-	    return super.matches(info);
+	    for (QualityList ql : doc.qualities()) {
+		if(match(ql)) {return true;}
+	    }
+	    return false;
 	}
     
 	@Override
@@ -471,6 +529,14 @@ public class ItemFilter {
 	    super(text, sign, value, opts);
 	}
 
+	@Override
+	protected boolean test(ItemIndex.Doc doc) {
+	    for (FoodInfo food : doc.foods()) {
+		if(match(food)) {return true;}
+	    }
+	    return false;
+	}
+
 	@Override
 	protected boolean match(ItemInfo item) {
 	    if(item instanceof FoodInfo) {
@@ -495,6 +561,14 @@ public class ItemFilter {
 	    super(text, sign, value, opts);
 	}
 
+	@Override
+	protected boolean test(ItemIndex.Doc doc) {
+	    for (FoodInfo food : doc.foods()) {
+		if(match(food)) {return true;}
+	    }
+	    return false;
+	}
+
 	@Override
 	protected boolean match(ItemInfo item) {
 	    if(item instanceof FoodInfo) {
@@ -519,8 +593,8 @@ public class ItemFilter {
 	}
 	
 	@Override
-	public boolean matches(List<ItemInfo> info) {
-	    Pair<Integer, Integer> armor = ItemInfo.getArmor(info);
+	protected boolean test(ItemIndex.Doc doc) {
+	    Pair<Integer, Integer> armor = doc.armor();
 	    if(armor != null) {
 		switch (getType(text)) {
 		    case 0://all
@@ -566,6 +640,14 @@ public class ItemFilter {
 	    super(text, sign, value, opts);
 	}
 	
+	@Override
+	protected boolean test(ItemIndex.Doc doc) {
+	    for (Gast gast : doc.gasts()) {
+		if(match(gast)) {return true;}
+	    }
+	    return false;
+	}
+	
 	@Override
 	protected boolean match(ItemInfo item) {
 	    if(item instanceof Gast) {
@@ -591,8 +673,8 @@ public class ItemFilter {
 	}
 	
 	@Override
-	public boolean matches(List<ItemInfo> info) {
-	    Map<Resource, Integer> bonuses = ItemInfo.getBonuses(info, null);
+	protected boolean test(ItemIndex.Doc doc) {
+	    Map<Resource, Integer> bonuses = doc.bonuses();
 	    if(text != null && text.length() >= 3) {
 		for (Resource res : bonuses.keySet()) {
 		    Resource.Tooltip tip = res.layer(Resource.tooltip);
@@ -612,8 +694,8 @@ public class ItemFilter {
 	}
 	
 	@Override
-	public boolean matches(List<ItemInfo> info) {
-	    List<Pair<Resource, Integer>> inputs = ItemInfo.getInputs(info);
+	protected boolean test(ItemIndex.Doc doc) {
+	    List<Pair<Resource, Integer>> inputs = doc.inputs();
 	    if(text != null && text.length() >= 3) {
 		for (Pair<Resource, Integer> input : inputs) {
 		    Resource res = input.a;
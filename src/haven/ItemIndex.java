@@ -0,0 +1,300 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven;
+
+import java.util.*;
+import haven.res.ui.tt.gast.Gast;
+import haven.resutil.Curiosity;
+import haven.resutil.FoodInfo;
+import me.ender.Reflect;
+
+/* Keeps what item filters look at for every live item, so that
+ * searching does not walk every item's info over again on each
+ * keystroke. Each item's info is reduced to a Doc, whose columns
+ * are extracted once, when first asked for, and then shared by all
+ * items with the same info list. Names and other tooltip text are
+ * also posted in a dictionary of distinct strings, which text
+ * searches scan instead of the items. The result of the current
+ * filter is kept up to date as items come, change and go. */
+public class ItemIndex {
+    public static final ItemIndex global = new ItemIndex();
+    private final Map<GItem, Doc> docs = new HashMap<>();
+    private final Map<String, Set<GItem>> names = new HashMap<>(), texts = new HashMap<>();
+    private ItemFilter qf = null;
+    private final Set<GItem> qres = new HashSet<>(), qpending = new HashSet<>();
+    public int nquery, nupdate;
+
+    public static class Doc {
+	public final List<ItemInfo> info;
+	private List<String> names, texts;
+	private List<QualityList> qualities;
+	private ItemData.Content content;
+	private List<Curiosity> curios;
+	private List<FoodInfo> foods;
+	private List<Gast> gasts;
+	private Pair<Integer, Integer> armor;
+	private boolean armorp;
+	private Map<Resource, Integer> bonuses;
+	private List<Pair<Resource, Integer>> inputs;
+
+	public Doc(List<ItemInfo> info) {
+	    this.info = info;
+	}
+
+	public boolean empty() {
+	    return((info == null) || info.isEmpty());
+	}
+
+	private <T> List<T> all(Class<T> cl) {
+	    List<T> ret = null;
+	    for(ItemInfo inf : info) {
+		if(cl.isInstance(inf)) {
+		    if(ret == null)
+			ret = new ArrayList<>(1);
+		    ret.add(cl.cast(inf));
+		}
+	    }
+	    return((ret == null) ? Collections.emptyList() : ret);
+	}
+
+	/* Lower-cased item names. */
+	public List<String> names() {
+	    if(names == null) {
+		List<String> buf = new ArrayList<>(1);
+		for(ItemInfo inf : info) {
+		    if(inf instanceof ItemInfo.Name)
+			buf.add(((ItemInfo.Name)inf).str.text.toLowerCase());
+		}
+		names = buf;
+	    }
+	    return(names);
+	}
+
+	/* Lower-cased free-form tooltip text and coinage names. */
+	public List<String> texts() {
+	    if(texts == null) {
+		List<String> buf = new ArrayList<>(0);
+		for(ItemInfo inf : info) {
+		    if(inf instanceof ItemInfo.AdHoc) {
+			buf.add(((ItemInfo.AdHoc)inf).str.text.toLowerCase());
+		    } else if(Reflect.is(inf, "Coinage")) {
+			String nm = Reflect.getFieldValueString(inf, "nm");
+			if(nm != null)
+			    buf.add(nm.toLowerCase());
+		    }
+		}
+		texts = buf;
+	    }
+	    return(texts);
+	}
+
+	/* Any quality lists in the info, followed by the one made
+	 * from it. */
+	public List<QualityList> qualities() {
+	    if(qualities == null) {
+		List<QualityList> buf = new ArrayList<>(all(QualityList.class));
+		buf.add(QualityList.make(info));
+		qualities = buf;
+	    }
+	    return(qualities);
+	}
+
+	public ItemData.Content content() {
+	    if(content == null)
+		content = ItemInfo.getContent(info);
+	    return(content);
+	}
+
+	public List<Curiosity> curios() {
+	    if(curios == null)
+		curios = all(Curiosity.class);
+	    return(curios);
+	}
+
+	public List<FoodInfo> foods() {
+	    if(foods == null)
+		foods = all(FoodInfo.class);
+	    return(foods);
+	}
+
+	public List<Gast> gasts() {
+	    if(gasts == null)
+		gasts = all(Gast.class);
+	    return(gasts);
+	}
+
+	public Pair<Integer, Integer> armor() {
+	    if(!armorp) {
+		armor = ItemInfo.getArmor(info);
+		armorp = true;
+	    }
+	    return(armor);
+	}
+
+	public Map<Resource, Integer> bonuses() {
+	    if(bonuses == null)
+		bonuses = ItemInfo.getBonuses(info, null);
+	    return(bonuses);
+	}
+
+	public List<Pair<Resource, Integer>> inputs() {
+	    if(inputs == null) {
+		List<Pair<Resource, Integer>> ret = ItemInfo.getInputs(info);
+		/* Inputs whose resources are still loading are
+		 * silently left out, so only keep what is known to be
+		 * complete. */
+		if(!ret.isEmpty() || ItemInfo.findlike("Inputs", info) == null)
+		    inputs = ret;
+		return(ret);
+	    }
+	    return(inputs);
+	}
+    }
+
+    private static void post(Map<String, Set<GItem>> dict, List<String> terms, GItem item) {
+	for(String t : terms)
+	    dict.computeIfAbsent(t, k -> new HashSet<>()).add(item);
+    }
+
+    private static void unpost(Map<String, Set<GItem>> dict, List<String> terms, GItem item) {
+	for(String t : terms) {
+	    Set<GItem> p = dict.get(t);
+	    if((p != null) && p.remove(item) && p.isEmpty())
+		dict.remove(t);
+	}
+    }
+
+    private void eval(GItem item, Doc doc) {
+	try {
+	    if(qf.matches(doc))
+		qres.add(item);
+	    else
+		qres.remove(item);
+	    qpending.remove(item);
+	} catch(Loading l) {
+	    qres.remove(item);
+	    qpending.add(item);
+	}
+    }
+
+    public synchronized void update(GItem item, Doc doc) {
+	Doc prev = docs.put(item, doc);
+	if(prev == doc)
+	    return;
+	if(prev != null) {
+	    unpost(names, prev.names(), item);
+	    unpost(texts, prev.texts(), item);
+	}
+	post(names, doc.names(), item);
+	post(texts, doc.texts(), item);
+	nupdate++;
+	if(qf != null)
+	    eval(item, doc);
+    }
+
+    public synchronized void remove(GItem item) {
+	Doc prev = docs.remove(item);
+	if(prev != null) {
+	    unpost(names, prev.names(), item);
+	    unpost(texts, prev.texts(), item);
+	}
+	qres.remove(item);
+	qpending.remove(item);
+    }
+
+    public synchronized void clear() {
+	docs.clear();
+	names.clear();
+	texts.clear();
+	qf = null;
+	qres.clear();
+	qpending.clear();
+    }
+
+    /* Items having a name (or, if full, any text) containing
+     * text. */
+    public synchronized Set<GItem> named(String text, boolean full) {
+	Set<GItem> ret = new HashSet<>();
+	for(Map.Entry<String, Set<GItem>> t : names.entrySet()) {
+	    if(t.getKey().contains(text))
+		ret.addAll(t.getValue());
+	}
+	if(full) {
+	    for(Map.Entry<String, Set<GItem>> t : texts.entrySet()) {
+		if(t.getKey().contains(text))
+		    ret.addAll(t.getValue());
+	    }
+	}
+	return(ret);
+    }
+
+    private void run(ItemFilter f) {
+	qf = f;
+	qres.clear();
+	qpending.clear();
+	nquery++;
+	Collection<GItem> cand = f.candidates(this);
+	if(cand == null)
+	    cand = docs.keySet();
+	for(GItem item : cand)
+	    eval(item, docs.get(item));
+    }
+
+    private void check(ItemFilter f) {
+	if(f != qf) {
+	    run(f);
+	} else if(!qpending.isEmpty()) {
+	    for(GItem item : new ArrayList<>(qpending))
+		eval(item, docs.get(item));
+	}
+    }
+
+    /* All live items matching f. The result of the last filter
+     * asked for is kept, and updated incrementally. */
+    public synchronized Set<GItem> query(ItemFilter f) {
+	check(f);
+	return(new HashSet<>(qres));
+    }
+
+    /* Whether item matches f, throwing Loading while that is not
+     * yet known. */
+    public synchronized boolean matches(ItemFilter f, GItem item) {
+	if(f != qf)
+	    run(f);
+	if(qpending.contains(item)) {
+	    eval(item, docs.get(item));
+	    if(qpending.contains(item))
+		throw(new Loading());
+	}
+	return(qres.contains(item));
+    }
+
+    public synchronized String stats() {
+	return(String.format("%d items, %d names, %d updates, %d queries, %d/%d matching",
+			     docs.size(), names.size(), nupdate, nquery, qres.size(), qres.size() + qpending.size()));
+    }
+}
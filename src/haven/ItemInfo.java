@@ -86,6 +86,11 @@ public abstract class ItemInfo {
 	}
     }
     
+    /* Implemented by infos that depend on the particular owner
+     * they were built for, rather than only on what the server
+     * sent, so that ItemInfoCache does not share them. */
+    public interface Local {}
+
     public interface ResOwner extends Owner {
 	Resource resource();
     }
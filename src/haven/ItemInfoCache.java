@@ -0,0 +1,266 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven;
+
+import java.util.*;
+import java.awt.image.BufferedImage;
+
+/* Shares built item info, and the tooltips rendered from it, among
+ * items of the same resource that were sent identical raw info, as
+ * happens for whole cupboards and stockpiles full of the same
+ * thing. Shared info is built against an Owner standing in for the
+ * items, so that it holds on to none of them. Lists with infos
+ * that depend on their particular owner (see ItemInfo.Local) are
+ * not shared. Entries are dropped in LRU order, by the pixel size
+ * of their tooltips. */
+public class ItemInfoCache {
+    public static final Config.Variable<Boolean> enabled = Config.Variable.propb("haven.infocache", true);
+    public static final Config.Variable<Integer> maxpx = Config.Variable.propi("haven.infocachepx", 8);
+    /* Nominal size of an entry without any tooltips rendered. */
+    public static final long ENTRYSZ = 1024;
+    private static final Map<Key, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    /* Resources whose info has turned out to be unshareable, so
+     * that it is not built twice over every time. */
+    private static final Set<String> local = new HashSet<>();
+    private static long cursz = 0;
+    public static long hits, misses, tiphits, tipmisses;
+
+    private static class Key {
+	final Object ctx;
+	final String res;
+	final int ver;
+	final Object[] data;
+	final int hash;
+
+	Key(Object ctx, Resource res, Object[] data) {
+	    this.ctx = ctx;
+	    this.res = res.name;
+	    this.ver = res.ver;
+	    this.data = data;
+	    this.hash = (((System.identityHashCode(ctx) * 31) + this.res.hashCode()) * 31 + ver) * 31 + Arrays.deepHashCode(data);
+	}
+
+	public int hashCode() {
+	    return(hash);
+	}
+
+	public boolean equals(Object o) {
+	    if(!(o instanceof Key))
+		return(false);
+	    Key that = (Key)o;
+	    return((this.hash == that.hash) && (this.ctx == that.ctx) && this.res.equals(that.res) &&
+		   (this.ver == that.ver) && Arrays.deepEquals(this.data, that.data));
+	}
+    }
+
+    public static class Entry {
+	public final List<ItemInfo> info;
+	private Tex shorttip, longtip;
+	private long size = ENTRYSZ;
+	private boolean live = true;
+	private ItemIndex.Doc doc;
+
+	private Entry(List<ItemInfo> info) {
+	    this.info = info;
+	}
+
+	public synchronized ItemIndex.Doc doc() {
+	    if(doc == null)
+		doc = new ItemIndex.Doc(info);
+	    return(doc);
+	}
+    }
+
+    /* What shared info is built against in place of the item that
+     * happened to ask for it first. It refers to that item only
+     * weakly, and only while the info is being built. */
+    public static class Owner implements ItemInfo.SpriteOwner {
+	private static final OwnerContext.ClassResolver<Owner> ctxr = new OwnerContext.ClassResolver<Owner>()
+	    .add(GItem.class, o -> o.item())
+	    .add(Glob.class, o -> o.sess.glob)
+	    .add(Session.class, o -> o.sess);
+	public final Session sess;
+	private final Resource res;
+	private final java.lang.ref.Reference<GItem> item;
+	private List<ItemInfo> info = null;
+	private boolean particular = false;
+
+	private Owner(Session sess, Resource res, GItem item) {
+	    this.sess = sess;
+	    this.res = res;
+	    this.item = new java.lang.ref.WeakReference<>(item);
+	}
+
+	public List<ItemInfo> info() {return(info);}
+	public Resource resource() {return(res);}
+	public <T> T context(Class<T> cl) {return(ctxr.context(cl, this));}
+
+	/* Info that looks at the item itself is not shared. */
+	private GItem item() {
+	    particular = true;
+	    return(item0());
+	}
+
+	private GItem item0() {
+	    GItem item = this.item.get();
+	    if(item == null)
+		throw(new Loading());
+	    return(item);
+	}
+
+	/* Sprites are made from the item's own data, which is not part
+	 * of the key, so neither is info named by its sprite shared. */
+	public GSprite sprite() {
+	    GSprite spr = item0().sprite();
+	    if(spr instanceof ItemInfo.Name.Dynamic)
+		particular = true;
+	    return(spr);
+	}
+    }
+
+    /* Returns an owner to build shareable info against, or null if
+     * the info should be built against the item itself. */
+    public static synchronized Owner owner(Session ctx, Resource res, GItem item) {
+	if(!enabled.get() || (ctx == null) || local.contains(res.name))
+	    return(null);
+	return(new Owner(ctx, res, item));
+    }
+
+    public static boolean shareable(List<ItemInfo> info) {
+	for(ItemInfo inf : info) {
+	    if((inf instanceof ItemInfo.Local) || (inf instanceof GItem.MeterInfo))
+		return(false);
+	}
+	return(true);
+    }
+
+    public static synchronized Entry get(Object ctx, Resource res, ItemInfo.Raw raw) {
+	if(!enabled.get() || (ctx == null) || (raw == null))
+	    return(null);
+	Entry ent = cache.get(new Key(ctx, res, raw.data));
+	if(ent != null)
+	    hits++;
+	else
+	    misses++;
+	return(ent);
+    }
+
+    /* Returns the entry now holding info built against owner,
+     * which may already have held an equal list, or null if the
+     * info cannot be shared and should be rebuilt against the item
+     * itself. */
+    public static synchronized Entry put(Owner owner, Resource res, ItemInfo.Raw raw, List<ItemInfo> info) {
+	if(!enabled.get() || (raw == null))
+	    return(null);
+	if(owner.particular || !shareable(info)) {
+	    local.add(res.name);
+	    return(null);
+	}
+	Key key = new Key(owner.sess, res, raw.data);
+	Entry ent = cache.get(key);
+	if(ent == null) {
+	    owner.info = info;
+	    cache.put(key, ent = new Entry(info));
+	    cursz += ent.size;
+	    trim();
+	}
+	return(ent);
+    }
+
+    private static void trim() {
+	long max = maxpx.get() * 1048576L;
+	for(Iterator<Entry> i = cache.values().iterator(); (cursz > max) && i.hasNext();) {
+	    Entry ent = i.next();
+	    cursz -= ent.size;
+	    ent.live = false;
+	    i.remove();
+	}
+    }
+
+    private static Tex render(List<ItemInfo> info, boolean lng) {
+	BufferedImage img = lng ? ItemInfo.longtip(info) : ItemInfo.shorttip(info);
+	if(img == null)
+	    throw(new Loading());
+	return(new TexI(img));
+    }
+
+    /* Returns the short or long tooltip of info, which is shared
+     * through ent if that is non-null. */
+    public static Tex tip(Entry ent, List<ItemInfo> info, boolean lng) {
+	if(ent == null)
+	    return(render(info, lng));
+	synchronized(ItemInfoCache.class) {
+	    Tex tip = lng ? ent.longtip : ent.shorttip;
+	    if(tip != null) {
+		tiphits++;
+		return(tip);
+	    }
+	    tipmisses++;
+	}
+	Tex tip = render(info, lng);
+	synchronized(ItemInfoCache.class) {
+	    if(ent.live && ((lng ? ent.longtip : ent.shorttip) == null)) {
+		if(lng)
+		    ent.longtip = tip;
+		else
+		    ent.shorttip = tip;
+		long sz = (long)tip.sz().x * tip.sz().y;
+		ent.size += sz;
+		cursz += sz;
+		trim();
+	    }
+	}
+	return(tip);
+    }
+
+    /* Drops a shared long tooltip, for when what it shows has
+     * changed without the info changing. */
+    public static synchronized void clearlong(Entry ent) {
+	if((ent == null) || (ent.longtip == null))
+	    return;
+	long sz = (long)ent.longtip.sz().x * ent.longtip.sz().y;
+	ent.longtip = null;
+	ent.size -= sz;
+	if(ent.live)
+	    cursz -= sz;
+    }
+
+    public static synchronized void clear() {
+	for(Entry ent : cache.values())
+	    ent.live = false;
+	cache.clear();
+	local.clear();
+	cursz = 0;
+    }
+
+    public static synchronized String stats() {
+	long n = hits + misses, tn = tiphits + tipmisses;
+	return(String.format("%d lists, %.1f/%d Mpx, %.1f%% hits, %.1f%% tip hits",
+			     cache.size(), cursz / 1048576.0, maxpx.get(),
+			     (n > 0) ? (hits * 100.0 / n) : 0.0, (tn > 0) ? (tiphits * 100.0 / tn) : 0.0));
+    }
+}
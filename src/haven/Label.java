@@ -78,6 +78,7 @@ public class Label extends Widget {
 	this.text.dispose();
 	this.text = f.render(texts = text, col);
 	sz = this.text.sz();
+	damage();
     }
     
     public String gettext() {return texts;}
@@ -87,6 +88,7 @@ public class Label extends Widget {
 	this.text.dispose();
 	this.text = f.render(texts, col);
 	sz = this.text.sz();
+	damage();
     }
 
     public void dispose() {
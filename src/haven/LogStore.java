@@ -0,0 +1,559 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven;
+
+import java.util.*;
+import java.util.zip.CRC32;
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.nio.channels.*;
+
+/* An append-only, memory-mapped log of named entries, meant as a
+ * faster way to read map files than HashDirCache, which needs a
+ * file lock and a header parse per entry. Stores are written
+ * through to the source store, which thus stays complete, and the
+ * log can be discarded at any time. Entries missing from the log
+ * are looked up in the source store and copied over, so existing
+ * map data migrates as it is used.
+ *
+ * Several clients may share a log. Appends are done under an
+ * exclusive lock on the log, after catching up with what others
+ * have appended, and readers catch up before every lookup. Every
+ * client holds a shared lock on a guard file while it has the log
+ * open, and the log is only compacted or discarded by whoever can
+ * lock the guard exclusively. Replaced entries are left dead in
+ * the log until it is compacted, which only happens when it is
+ * opened. */
+public class LogStore implements ResCache {
+    public static final Config.Variable<Boolean> enabled = Config.Variable.propb("haven.maplog", false);
+    private static final byte[] MAGIC = "Haven log store 1\n".getBytes(Utils.ascii);
+    /* Records never cross chunk boundaries, so that each chunk can
+     * be mapped on its own. */
+    private static final int CHUNK = 1 << 24;
+    private static final int RHDR = 1 + 2 + 4, RTRL = 4;
+    private static final int REC_DATA = 1;
+    private static final int IDXINTERVAL = 4096;
+    public final Path path, ipath, gpath;
+    public final ResCache source;
+    private final FileChannel fp, gfp;
+    private final FileLock guard;
+    private final long gen;
+    private boolean closed = false;
+    private final Map<String, Entry> index = new HashMap<>();
+    private final Set<String> absent = new HashSet<>();
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private long end, dead;
+    private int unindexed = 0;
+
+    private static class Entry {
+	final long off;
+	final int len, rlen;
+
+	Entry(long off, int len, int rlen) {
+	    this.off = off;
+	    this.len = len;
+	    this.rlen = rlen;
+	}
+    }
+
+    private static Path ipath(Path path) {return(path.resolveSibling(path.getFileName() + ".idx"));}
+    private static Path gpath(Path path) {return(path.resolveSibling(path.getFileName() + ".lock"));}
+
+    private static FileChannel openrw(Path path) throws IOException {
+	return(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE));
+    }
+
+    /* Unguarded stores are only used internally, by compaction,
+     * which holds the guard exclusively itself. */
+    private LogStore(Path path, ResCache source, boolean guarded) throws IOException {
+	this.path = path;
+	this.ipath = ipath(path);
+	this.gpath = gpath(path);
+	this.source = source;
+	FileChannel gfp = null, fp = null;
+	try {
+	    FileLock guard = null;
+	    if(guarded) {
+		gfp = openrw(gpath);
+		guard = gfp.lock(0, Long.MAX_VALUE, true);
+	    }
+	    fp = openrw(path);
+	    this.fp = fp;
+	    this.gfp = gfp;
+	    this.guard = guard;
+	    try(FileLock wl = fp.lock()) {
+		this.gen = open();
+	    }
+	} catch(IOException | RuntimeException e) {
+	    if(fp != null)
+		fp.close();
+	    if(gfp != null)
+		gfp.close();
+	    throw(e);
+	}
+    }
+
+    private void writefully(ByteBuffer buf, long pos) throws IOException {
+	while(buf.hasRemaining())
+	    pos += fp.write(buf, pos);
+    }
+
+    private void readfully(ByteBuffer buf, long pos) throws IOException {
+	while(buf.hasRemaining()) {
+	    int rv = fp.read(buf, pos);
+	    if(rv < 0)
+		throw(new EOFException());
+	    pos += rv;
+	}
+	buf.flip();
+    }
+
+    private long open() throws IOException {
+	long sz = fp.size();
+	ByteBuffer hdr = ByteBuffer.allocate(MAGIC.length + 8);
+	if(sz < hdr.capacity()) {
+	    long gen = new Random().nextLong();
+	    hdr.put(MAGIC).putLong(gen).flip();
+	    fp.truncate(0);
+	    writefully(hdr, 0);
+	    end = hdr.capacity();
+	    return(gen);
+	}
+	readfully(hdr, 0);
+	byte[] magic = new byte[MAGIC.length];
+	hdr.get(magic);
+	if(!Arrays.equals(magic, MAGIC))
+	    throw(new IOException("not a log store: " + path));
+	long gen = hdr.getLong();
+	long from = loadindex(gen);
+	if(from < 0) {
+	    index.clear();
+	    dead = 0;
+	    from = hdr.capacity();
+	}
+	end = scan(from, sz);
+	if(end < sz) {
+	    Debug.log.printf("logstore: truncating %s from %d to %d bytes\n", path, sz, end);
+	    fp.truncate(end);
+	}
+	return(gen);
+    }
+
+    /* Reads the records in [from, to), stopping at the first one
+     * that is torn or corrupt. */
+    private long scan(long from, long to) throws IOException {
+	ByteBuffer hdr = ByteBuffer.allocate(RHDR);
+	long off = from;
+	CRC32 crc = new CRC32();
+	while(off < to) {
+	    if(to - off < RHDR)
+		break;
+	    hdr.clear();
+	    readfully(hdr, off);
+	    int type = hdr.get();
+	    if(type == 0) {
+		/* Padding up to the next chunk */
+		long next = ((off / CHUNK) + 1) * CHUNK;
+		if(next > to)
+		    break;
+		off = next;
+		continue;
+	    }
+	    if(type != REC_DATA)
+		break;
+	    int nlen = hdr.getShort() & 0xffff, dlen = hdr.getInt();
+	    long rlen = RHDR + nlen + (long)dlen + RTRL;
+	    if((dlen < 0) || (off + rlen > to))
+		break;
+	    ByteBuffer body = ByteBuffer.allocate(nlen + dlen + RTRL);
+	    readfully(body, off + RHDR);
+	    crc.reset();
+	    crc.update(body.array(), 0, nlen + dlen);
+	    body.position(nlen + dlen);
+	    if((int)crc.getValue() != body.getInt())
+		break;
+	    String name = new String(body.array(), 0, nlen, Utils.utf8);
+	    put(name, new Entry(off + RHDR + nlen, dlen, (int)rlen));
+	    off += rlen;
+	}
+	return(off);
+    }
+
+    private void put(String name, Entry ent) {
+	Entry prev = index.put(name, ent);
+	if(prev != null)
+	    dead += prev.rlen;
+	absent.remove(name);
+    }
+
+    /* Picks up whatever other clients have appended. A record that
+     * is still being written fails its CRC and is picked up on a
+     * later call instead. */
+    private synchronized void sync() throws IOException {
+	long sz = fp.size();
+	if(sz > end)
+	    end = scan(end, sz);
+    }
+
+    private long loadindex(long gen) {
+	try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(ipath)))) {
+	    if((in.readLong() != gen))
+		return(-1);
+	    long covered = in.readLong();
+	    if(covered > fp.size())
+		return(-1);
+	    dead = in.readLong();
+	    for(int n = in.readInt(); n > 0; n--) {
+		String name = in.readUTF();
+		long off = in.readLong();
+		int len = in.readInt(), rlen = in.readInt();
+		index.put(name, new Entry(off, len, rlen));
+	    }
+	    return(covered);
+	} catch(NoSuchFileException e) {
+	    return(-1);
+	} catch(IOException e) {
+	    new Warning(e, "could not read log store index").issue();
+	    return(-1);
+	}
+    }
+
+    private void saveindex() {
+	Path tmp = ipath.resolveSibling(ipath.getFileName() + ".new");
+	try {
+	    try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+		out.writeLong(gen);
+		out.writeLong(end);
+		out.writeLong(dead);
+		out.writeInt(index.size());
+		for(Map.Entry<String, Entry> ent : index.entrySet()) {
+		    out.writeUTF(ent.getKey());
+		    out.writeLong(ent.getValue().off);
+		    out.writeInt(ent.getValue().len);
+		    out.writeInt(ent.getValue().rlen);
+		}
+	    }
+	    Files.move(tmp, ipath, StandardCopyOption.REPLACE_EXISTING);
+	    unindexed = 0;
+	} catch(IOException e) {
+	    new Warning(e, "could not write log store index").issue();
+	}
+    }
+
+    /* If ifabsent is set, nothing is written if the log turns out
+     * to hold the name already once caught up under the lock, and
+     * false is returned. */
+    private synchronized boolean append(String name, byte[] data, int len, boolean ifabsent) throws IOException {
+	byte[] nm = name.getBytes(Utils.utf8);
+	if(nm.length > 0xffff)
+	    throw(new IOException("name too long: " + name));
+	int rlen = RHDR + nm.length + len + RTRL;
+	if(rlen > CHUNK)
+	    throw(new IOException(String.format("entry too large for log store: %s (%d bytes)", name, len)));
+	CRC32 crc = new CRC32();
+	crc.update(nm);
+	crc.update(data, 0, len);
+	ByteBuffer buf = ByteBuffer.allocate(rlen);
+	buf.put((byte)REC_DATA).putShort((short)nm.length).putInt(len);
+	buf.put(nm).put(data, 0, len).putInt((int)crc.getValue());
+	buf.flip();
+	try(FileLock wl = fp.lock()) {
+	    sync();
+	    if(ifabsent && index.containsKey(name))
+		return(false);
+	    if(end < fp.size()) {
+		/* Nobody else is writing, so this is the torn tail
+		 * of a client that died mid-append. */
+		fp.truncate(end);
+	    }
+	    long off = end;
+	    if((off % CHUNK) + rlen > CHUNK) {
+		long next = ((off / CHUNK) + 1) * CHUNK;
+		writefully(ByteBuffer.allocate((int)(next - off)), off);
+		off = next;
+	    }
+	    writefully(buf, off);
+	    end = off + rlen;
+	    put(name, new Entry(off + RHDR + nm.length, len, rlen));
+	    if(++unindexed >= IDXINTERVAL)
+		saveindex();
+	}
+	return(true);
+    }
+
+    private void append(String name, byte[] data, int len) throws IOException {
+	append(name, data, len, false);
+    }
+
+    private synchronized ByteBuffer data(Entry ent) throws IOException {
+	int ci = (int)(ent.off / CHUNK);
+	while(chunks.size() <= ci)
+	    chunks.add(null);
+	MappedByteBuffer map = chunks.get(ci);
+	long base = (long)ci * CHUNK;
+	if((map == null) || (map.capacity() < (ent.off - base) + ent.len)) {
+	    /* The last chunk is remapped as it grows. */
+	    map = fp.map(FileChannel.MapMode.READ_ONLY, base, Math.min(CHUNK, end - base));
+	    chunks.set(ci, map);
+	}
+	ByteBuffer ret = map.duplicate();
+	ret.position((int)(ent.off - base)).limit((int)(ent.off - base) + ent.len);
+	return(ret.slice());
+    }
+
+    private static class BufferStream extends InputStream {
+	private final ByteBuffer buf;
+
+	BufferStream(ByteBuffer buf) {this.buf = buf;}
+
+	public int read() {
+	    return(buf.hasRemaining() ? (buf.get() & 0xff) : -1);
+	}
+
+	public int read(byte[] b, int off, int len) {
+	    if(!buf.hasRemaining())
+		return((len == 0) ? 0 : -1);
+	    len = Math.min(len, buf.remaining());
+	    buf.get(b, off, len);
+	    return(len);
+	}
+
+	public long skip(long n) {
+	    n = Math.max(Math.min(n, buf.remaining()), 0);
+	    buf.position(buf.position() + (int)n);
+	    return(n);
+	}
+
+	public int available() {return(buf.remaining());}
+    }
+
+    private InputStream migrate(String name) throws IOException {
+	synchronized(this) {
+	    if(absent.contains(name))
+		throw(new FileNotFoundException(name));
+	}
+	byte[] data;
+	try(InputStream in = source.fetch(name)) {
+	    data = Utils.readall(in);
+	} catch(FileNotFoundException e) {
+	    synchronized(this) {
+		absent.add(name);
+	    }
+	    throw(e);
+	}
+	/* Another client may have stored a newer version since the
+	 * source was read, which must not be shadowed by this one. */
+	Entry ent;
+	synchronized(this) {
+	    if(append(name, data, data.length, true))
+		return(new ByteArrayInputStream(data));
+	    ent = index.get(name);
+	}
+	return(new BufferStream(data(ent)));
+    }
+
+    public InputStream fetch(String name) throws IOException {
+	Entry ent;
+	synchronized(this) {
+	    if(closed)
+		return(source.fetch(name));
+	    sync();
+	    ent = index.get(name);
+	}
+	if(ent == null) {
+	    if(source == null)
+		throw(new FileNotFoundException(name));
+	    return(migrate(name));
+	}
+	return(new BufferStream(data(ent)));
+    }
+
+    public OutputStream store(String name) {
+	return(new ByteArrayOutputStream() {
+		private boolean closed = false;
+
+		public void close() throws IOException {
+		    if(!closed) {
+			closed = true;
+			try(OutputStream out = source.store(name)) {
+			    out.write(buf, 0, count);
+			}
+			synchronized(LogStore.this) {
+			    if(!LogStore.this.closed)
+				append(name, buf, count);
+			}
+		    }
+		}
+	    });
+    }
+
+    public synchronized int size() {return(index.size());}
+    public synchronized long deadbytes() {return(dead);}
+
+    /* Rewrites only the live records of the log at the given path
+     * into a new log, if enough of it is dead to make it worthwhile. */
+    private static void compact(Path path) throws IOException {
+	if(!Files.exists(path))
+	    return;
+	try(FileChannel gfp = openrw(gpath(path)); FileLock excl = gfp.tryLock()) {
+	    /* Someone else has it open, so it will have to wait. */
+	    if(excl == null)
+		return;
+	    compact0(path);
+	}
+    }
+
+    private static void compact0(Path path) throws IOException {
+	LogStore cur = new LogStore(path, null, false);
+	Path tmp = path.resolveSibling(path.getFileName() + ".new");
+	try {
+	    if((cur.dead < CHUNK) || (cur.dead < (cur.end - cur.dead)))
+		return;
+	    Debug.log.printf("logstore: compacting %s, %d of %d bytes dead\n", path, cur.dead, cur.end);
+	    Files.deleteIfExists(tmp);
+	    LogStore nw = new LogStore(tmp, null, false);
+	    try {
+		List<Map.Entry<String, Entry>> live = new ArrayList<>(cur.index.entrySet());
+		live.sort(Comparator.comparingLong(e -> e.getValue().off));
+		for(Map.Entry<String, Entry> ent : live) {
+		    ByteBuffer data = ByteBuffer.allocate(ent.getValue().len);
+		    cur.readfully(data, ent.getValue().off);
+		    nw.append(ent.getKey(), data.array(), data.limit());
+		}
+		nw.saveindex();
+	    } finally {
+		nw.close();
+	    }
+	} finally {
+	    cur.close();
+	}
+	Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+	Files.move(cur.ipath.resolveSibling(tmp.getFileName() + ".idx"), cur.ipath, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void close() throws IOException {
+	try {
+	    fp.close();
+	} finally {
+	    if(gfp != null)
+		gfp.close();
+	}
+    }
+
+    /* Saves the index, so that the next open need not scan what
+     * was appended since the last snapshot, and lets go of the
+     * log. Whatever is still using the store goes straight to the
+     * source store after this. */
+    public synchronized void shutdown() throws IOException {
+	if(closed)
+	    return;
+	try {
+	    if(unindexed > 0) {
+		try(FileLock wl = fp.lock()) {
+		    sync();
+		    saveindex();
+		}
+	    }
+	} finally {
+	    closed = true;
+	    close();
+	}
+    }
+
+    public static void closeall() {
+	synchronized(current) {
+	    for(LogStore st : current.values()) {
+		try {
+		    st.shutdown();
+		} catch(IOException e) {
+		    new Warning(e, "could not close log store").issue();
+		}
+	    }
+	    current.clear();
+	}
+    }
+
+    private static final Map<Path, LogStore> current = new HashMap<>();
+    public static LogStore get(Path path, ResCache source) throws IOException {
+	synchronized(current) {
+	    LogStore ret = current.get(path);
+	    if(ret == null) {
+		try {
+		    compact(path);
+		} catch(IOException e) {
+		    new Warning(e, "could not compact log store").issue();
+		}
+		current.put(path, ret = new LogStore(path, source, true));
+	    }
+	    return(ret);
+	}
+    }
+
+    /* Puts the log for a store alongside HashDirCache's files,
+     * named after what it is backing. */
+    private static Path logpath(ResCache source) {
+	long h = 0;
+	String id = String.valueOf(source);
+	for(int i = 0; i < id.length(); i++)
+	    h = (h * 31) + id.charAt(i);
+	return(HashDirCache.findbase().resolve(String.format("%016x.log", h)));
+    }
+
+    public static LogStore get(ResCache source) throws IOException {
+	return(get(logpath(source), source));
+    }
+
+    /* Deletes the log of a store that is no longer to be used with
+     * one. Since the source store is always written through, this
+     * loses nothing. Returns false if the log is still open by some
+     * client, in which case the caller should keep using it, lest
+     * its writes be shadowed by the log's older entries. */
+    public static boolean discard(ResCache source) {
+	Path path = logpath(source);
+	synchronized(current) {
+	    if(current.containsKey(path))
+		return(false);
+	    if(!Files.exists(path))
+		return(true);
+	    try(FileChannel gfp = openrw(gpath(path)); FileLock excl = gfp.tryLock()) {
+		if(excl == null)
+		    return(false);
+		Files.deleteIfExists(path);
+		Files.deleteIfExists(ipath(path));
+		return(true);
+	    } catch(IOException e) {
+		new Warning(e, "could not discard map log store").issue();
+		return(false);
+	    }
+	}
+    }
+
+    public String toString() {
+	return("LogStore(" + path + ")");
+    }
+}
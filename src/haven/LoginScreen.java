@@ -54,6 +54,7 @@ public class LoginScreen extends Widget {
     
     public LoginScreen(String hostname) {
 	super(bg.sz());
+	ResTrace.context("login");
 	this.hostname = hostname;
 	setfocustab(true);
 	add(new Img(bg), Coord.z);
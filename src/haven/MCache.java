@@ -57,6 +57,11 @@ public class MCache implements MapSource {
     public int olseq = 0, chseq = 0;
     public long lastupdate = 0;
     Map<Integer, Defrag> fragbufs = new TreeMap<Integer, Defrag>();
+    /* Map meshes and flavor objects are built on a pool of their
+     * own, so that they neither wait behind nor hold up unrelated
+     * deferred work. */
+    private final Defer builder = new Defer(Thread.currentThread().getThreadGroup(), "Terrain builders",
+					    Math.max(2, Runtime.getRuntime().availableProcessors()));
 
     public static class LoadingMap extends Loading {
 	public final Coord gc;
@@ -304,7 +309,7 @@ public class MCache implements MapSource {
 	    private T val;
 	    private boolean inited = false;
 
-	    public T get() {
+	    public T get(int prio) {
 		T ret = this.val;
 		if((ret == null) || (this.def != null)) {
 		    synchronized(this) {
@@ -317,9 +322,9 @@ public class MCache implements MapSource {
 			    /* Grid has been disposed, so wait for new one to arrive. */
 			    throw(new LoadingMap(MCache.this, gc));
 			}
-			if((ret == null) || ((this.def != null) && this.def.done())) {
+			if((ret == null) || ((this.def != null) && this.def.done(prio))) {
 			    T prev = ret;
-			    update(ret = this.def.get());
+			    update(ret = this.def.get(prio));
 			    this.def = null;
 			    if((prev != null) && (prev instanceof Disposable))
 				((Disposable)prev).dispose();
@@ -329,6 +334,10 @@ public class MCache implements MapSource {
 		return(ret);
 	    }
 
+	    public T get() {
+		return(get(5));
+	    }
+
 	    protected void update(T val) {
 		this.val = val;
 	    }
@@ -340,7 +349,7 @@ public class MCache implements MapSource {
 	    public void rebuild() {
 		synchronized(this) {
 		    Defer.Future<T> prev = this.def;
-		    this.def = Defer.later(new Defer.Callable<T>() {
+		    this.def = builder.defer(new Defer.Callable<T>() {
 			    public T call() {return(build());}
 			    public String toString() {return(message());}
 			});
@@ -349,6 +358,18 @@ public class MCache implements MapSource {
 		}
 	    }
 
+	    /* Abandons an initial build that has not completed
+	     * yet. It is restarted if the value is asked for again. */
+	    public void cancel() {
+		synchronized(this) {
+		    if((this.val == null) && (this.def != null)) {
+			this.def.cancel();
+			this.def = null;
+			inited = false;
+		    }
+		}
+	    }
+
 	    public void dispose() {
 		synchronized(this) {
 		    inited = true;
@@ -407,6 +428,11 @@ public class MCache implements MapSource {
 		fo.rebuild();
 	    }
 
+	    public void cancel() {
+		mesh.cancel();
+		fo.cancel();
+	    }
+
 	    public void dispose() {
 		synchronized(this) {
 		    mesh.dispose();
@@ -538,16 +564,24 @@ public class MCache implements MapSource {
 	    return(new Flavobjs(buf.mats));
 	}
 
+	public RenderTree.Node getfo(Coord cc, int prio) {
+	    return(geticut(cc).fo.get(prio));
+	}
+
 	public RenderTree.Node getfo(Coord cc) {
-	    return(geticut(cc).fo.get());
+	    return(getfo(cc, 5));
 	}
 
 	private Cut geticut(Coord cc) {
 	    return(cuts[cc.x + (cc.y * cutn.x)]);
 	}
 
+	public MapMesh getcut(Coord cc, int prio) {
+	    return(geticut(cc).mesh.get(prio));
+	}
+
 	public MapMesh getcut(Coord cc) {
-	    return(geticut(cc).mesh.get());
+	    return(getcut(cc, 5));
 	}
 	
 	public RenderTree.Node getolcut(OverlayInfo id, Coord cc) {
@@ -868,62 +902,133 @@ public class MCache implements MapSource {
 	}
     }
 
-    /* Apparently, the values of thread-locals don't necessarily
-     * become unreachable just because the thread-local itself becomes
-     * unreachable, so keep the grid in a weak reference. */
-    private final ThreadLocal<Reference<Grid>> cached = new ThreadLocal<>();
-    public Grid getgrid(Coord gc) {
-	Reference<Grid> ref = cached.get();
-	Grid ret = (ref == null) ? null : ref.get();
-	if((ret != null) && ret.gc.equals(gc) && !ret.removed)
+    /* Immutable, open-addressed snapshot of the grid table, indexed
+     * both by grid coordinate and by grid ID. It is republished
+     * whenever grids are added, filled or removed, which is rare, so
+     * that the hot lookups (height and tile queries for every moving
+     * object) need neither take any lock nor allocate. */
+    private static class GridIndex {
+	static final GridIndex empty = new GridIndex(Collections.emptyList());
+	final long[] ckeys, ikeys;
+	final Grid[] byc, byid;
+	final int mask;
+
+	GridIndex(Collection<Grid> grids) {
+	    int sz = Integer.highestOneBit(Math.max(grids.size(), 1) * 4);
+	    ckeys = new long[sz]; byc = new Grid[sz];
+	    ikeys = new long[sz]; byid = new Grid[sz];
+	    mask = sz - 1;
+	    for(Grid g : grids) {
+		long ck = ckey(g.gc.x, g.gc.y);
+		int i = hash(ck) & mask;
+		while(byc[i] != null)
+		    i = (i + 1) & mask;
+		ckeys[i] = ck; byc[i] = g;
+		i = hash(g.id) & mask;
+		while(byid[i] != null)
+		    i = (i + 1) & mask;
+		ikeys[i] = g.id; byid[i] = g;
+	    }
+	}
+
+	static long ckey(int x, int y) {
+	    return((((long)x) << 32) | (y & 0xffffffffL));
+	}
+
+	static int hash(long k) {
+	    k *= 0x9e3779b97f4a7c15L;
+	    return((int)(k ^ (k >>> 32)));
+	}
+
+	Grid get(int x, int y) {
+	    long ck = ckey(x, y);
+	    for(int i = hash(ck) & mask; byc[i] != null; i = (i + 1) & mask) {
+		if(ckeys[i] == ck)
+		    return(byc[i]);
+	    }
+	    return(null);
+	}
+
+	Grid get(long id) {
+	    for(int i = hash(id) & mask; byid[i] != null; i = (i + 1) & mask) {
+		if(ikeys[i] == id)
+		    return(byid[i]);
+	    }
+	    return(null);
+	}
+    }
+
+    private volatile GridIndex index = GridIndex.empty;
+
+    /* Must be called with the grids lock held. */
+    private void reindex() {
+	index = new GridIndex(grids.values());
+    }
+
+    public Grid getgrid(int gx, int gy) {
+	Grid ret = index.get(gx, gy);
+	if((ret != null) && !ret.removed)
 	    return(ret);
 	synchronized(grids) {
+	    Coord gc = Coord.of(gx, gy);
 	    ret = grids.get(gc);
 	    if(ret == null) {
 		request(gc);
 		throw(new LoadingMap(this, gc));
 	    }
-	    cached.set(new WeakReference<>(ret));
 	    return(ret);
 	}
     }
+
+    public Grid getgrid(Coord gc) {
+	return(getgrid(gc.x, gc.y));
+    }
     
     public Grid getgrid(long id) {
-	synchronized (grids) {
-	    for (Grid grid : grids.values()) {
-		if(grid.id == id) {
-		    return grid;
-		}
-	    }
-	}
-	return null;
+	return(index.get(id));
+    }
+
+    public Grid getgridt(int tx, int ty) {
+	return(getgrid(Utils.floordiv(tx, cmaps.x), Utils.floordiv(ty, cmaps.y)));
     }
 
     public Grid getgridt(Coord tc) {
-	return(getgrid(tc.div(cmaps)));
+	return(getgridt(tc.x, tc.y));
+    }
+
+    public int gettile(int tx, int ty) {
+	Grid g = getgridt(tx, ty);
+	return(g.tiles[(tx - g.ul.x) + ((ty - g.ul.y) * cmaps.x)]);
     }
 
     public int gettile(Coord tc) {
-	Grid g = getgridt(tc);
-	return(g.gettile(tc.sub(g.ul)));
+	return(gettile(tc.x, tc.y));
+    }
+
+    public double getfz(int tx, int ty) {
+	return CFG.FLAT_TERRAIN.get() ? 0 : getfz2(tx, ty);
     }
 
     public double getfz(Coord tc) {
-	return CFG.FLAT_TERRAIN.get() ? 0 : getfz2(tc);
+	return(getfz(tc.x, tc.y));
+    }
+
+    public double getfz2(int tx, int ty) {
+	Grid g = getgridt(tx, ty);
+	return(g.z[(tx - g.ul.x) + ((ty - g.ul.y) * cmaps.x)]);
     }
     
     public double getfz2(Coord tc) {
-	Grid g = getgridt(tc);
-	return(g.getz(tc.sub(g.ul)));
+	return(getfz2(tc.x, tc.y));
     }
 
     public double getcz(double px, double py) {
 	double tw = tilesz.x, th = tilesz.y;
-	Coord ul = Coord.of(Utils.floordiv(px, tw), Utils.floordiv(py, th));
-	double sx = (px - (ul.x * tw)) / tw;
-	double sy = (py - (ul.y * th)) / th;
-	return(((1.0f - sy) * (((1.0f - sx) * getfz(ul)) + (sx * getfz(ul.add(1, 0))))) +
-	       (sy * (((1.0f - sx) * getfz(ul.add(0, 1))) + (sx * getfz(ul.add(1, 1))))));
+	int ux = Utils.floordiv(px, tw), uy = Utils.floordiv(py, th);
+	double sx = (px - (ux * tw)) / tw;
+	double sy = (py - (uy * th)) / th;
+	return(((1.0f - sy) * (((1.0f - sx) * getfz(ux, uy)) + (sx * getfz(ux + 1, uy)))) +
+	       (sy * (((1.0f - sx) * getfz(ux, uy + 1)) + (sx * getfz(ux + 1, uy + 1)))));
     }
 
     public double getcz(Coord2d pc) {
@@ -1025,14 +1130,42 @@ public class MCache implements MapSource {
 	}
     }
     
+    public MapMesh getcut(Coord cc, int prio) {
+	return(getgrid(cc.div(cutn)).getcut(cc.mod(cutn), prio));
+    }
+
     public MapMesh getcut(Coord cc) {
-	return(getgrid(cc.div(cutn)).getcut(cc.mod(cutn)));
+	return(getcut(cc, 5));
     }
     
+    public RenderTree.Node getfo(Coord cc, int prio) {
+	synchronized(grids) {
+	    return(getgrid(cc.div(cutn)).getfo(cc.mod(cutn), prio));
+	}
+    }
+
     public RenderTree.Node getfo(Coord cc) {
+	return(getfo(cc, 5));
+    }
+
+    /* Cancels pending initial builds of all cuts outside the given
+     * area, given in cut coordinates. */
+    public void cancelbuilds(Area area) {
+	Collection<Grid> copy;
 	synchronized(grids) {
-	    return(getgrid(cc.div(cutn)).getfo(cc.mod(cutn)));
+	    copy = new ArrayList<>(grids.values());
 	}
+	for(Grid g : copy) {
+	    Coord gcc = g.gc.mul(cutn);
+	    for(Grid.Cut cut : g.cuts) {
+		if(!area.contains(gcc.add(cut.cc)))
+		    cut.cancel();
+	    }
+	}
+    }
+
+    public String buildstats() {
+	return(builder.stats());
     }
 
     public RenderTree.Node getolcut(OverlayInfo id, Coord cc) {
@@ -1057,6 +1190,7 @@ public class MCache implements MapSource {
 		    if(g == null)
 			grids.put(c, g = new Grid(c));
 		    g.fill(msg);
+		    reindex();
 		    req.remove(c);
 		    olseq++;
 		    chseq++;
@@ -1154,6 +1288,7 @@ public class MCache implements MapSource {
 		for(Grid g : grids.values())
 		    g.dispose();
 		grids.clear();
+		reindex();
 		req.clear();
 		MapDumper.newSession();
 	    }
@@ -1176,6 +1311,7 @@ public class MCache implements MapSource {
 			i.remove();
 		    }
 		}
+		reindex();
 		for(Iterator<Coord> i = req.keySet().iterator(); i.hasNext();) {
 		    Coord gc = i.next();
 		    if((gc.x < ul.x) || (gc.y < ul.y) || (gc.x > lr.x) || (gc.y > lr.y))
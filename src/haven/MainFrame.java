@@ -377,6 +377,7 @@ public class MainFrame extends java.awt.Frame implements Console.Directory {
 	    } catch(IOException e) {
 		throw(new Error(e));
 	    }
+	    ResTrace.prefetch(Resource.remote(), ResCache.global);
 	}
     }
 
@@ -395,6 +396,7 @@ public class MainFrame extends java.awt.Frame implements Console.Directory {
 		}
 	    } catch(IOException e) {}
 	}
+	ResTrace.save(ResCache.global);
     }
 
     static {
@@ -437,7 +439,9 @@ public class MainFrame extends java.awt.Frame implements Console.Directory {
 	}
 	setupres();
 	UI.Runner fun = null;
-	if(Bootstrap.servargs.get() != null) {
+	if(ReplayConnection.replay.get() != null) {
+	    fun = new RemoteUI(ReplayConnection.session(ReplayConnection.replay.get()));
+	} else if(Bootstrap.servargs.get() != null) {
 	    try {
 		fun = new RemoteUI(connect(Bootstrap.servargs.get()));
 	    } catch(ConnectionError e) {
@@ -451,6 +455,7 @@ public class MainFrame extends java.awt.Frame implements Console.Directory {
 	    f.setfs();
 	f.run(fun);
 	resdump();
+	LogStore.closeall();
 	status("exit");
 	System.exit(0);
     }
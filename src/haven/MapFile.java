@@ -33,6 +33,7 @@ import java.io.*;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.awt.image.WritableRaster;
+import java.awt.image.DataBufferByte;
 import haven.render.*;
 import haven.Defer.Future;
 import me.ender.IDPool;
@@ -443,7 +444,7 @@ public class MapFile {
 	    return(zmap[c.x + (c.y * cmaps.x)]);
 	}
 
-	private BufferedImage tiletex(int t, BufferedImage[] texes, boolean[] cached) {
+	private BufferedImage tiletex(int t, BufferedImage[] texes, boolean[] cached, boolean[] failed) {
 	    if(!cached[t]) {
 		Resource r = null;
 		try {
@@ -452,6 +453,8 @@ public class MapFile {
 		    throw(l);
 		} catch(Exception e) {
 		    warn(e, "could not load tileset resource %s(v%d): %s", tilesets[t].res.name, tilesets[t].res.ver, e);
+		    if(failed != null)
+			failed[0] = true;
 		}
 		if(r != null) {
 		    Resource.Image ir = r.layer(Resource.imgc);
@@ -465,6 +468,12 @@ public class MapFile {
 	}
 
 	public BufferedImage render(Coord off) {
+	    return(render(off, null));
+	}
+
+	/* Sets failed[0] if some tileset could not be loaded and was
+	 * left black, for whoever would keep the result around. */
+	public BufferedImage render(Coord off, boolean[] failed) {
 	    BufferedImage[] texes = new BufferedImage[tilesets.length];
 	    boolean[] cached = new boolean[tilesets.length];
 	    WritableRaster buf = PUtils.imgraster(cmaps);
@@ -472,7 +481,7 @@ public class MapFile {
 	    for(c.y = 0; c.y < cmaps.y; c.y++) {
 		for(c.x = 0; c.x < cmaps.x; c.x++) {
 		    int t = gettile(c);
-		    BufferedImage tex = tiletex(t, texes, cached);
+		    BufferedImage tex = tiletex(t, texes, cached, failed);
 		    int rgb = 0;
 		    if(tex != null)
 			rgb = tex.getRGB(Utils.floormod(c.x + off.x, tex.getWidth()),
@@ -819,7 +828,9 @@ public class MapFile {
 		    long storedid = z.int64();
 		    if(storedid != id)
 			throw(new Message.FormatError(String.format("Grid ID mismatch: expected %s, got %s", id, storedid)));
-		    long mtime = (ver >= 2) ? z.int64() : System.currentTimeMillis();
+		    /* Grids from before mtimes were stored get a fixed one,
+		     * so that images rendered from them stay valid. */
+		    long mtime = (ver >= 2) ? z.int64() : 0;
 		    Pair<TileInfo[], int[]> tiles = loadtiles(z, (ver >= 5) ? 2 : 1);
 		    float[] zmap;
 		    if(ver >= 3)
@@ -1103,6 +1114,92 @@ public class MapFile {
 	}
     }
 
+    /* Pre-rendered minimap images, so that panning and zooming over
+     * already visited parts of the map needn't render anything.
+     * They are kept as zlib-compressed raw RGBA rather than PNG,
+     * since that is far cheaper to both encode and decode. Every
+     * image is stamped with the mtimes and tilesets of all the grids
+     * it was rendered from, and is ignored if they don't match, so
+     * that nothing ever needs to be invalidated explicitly. A zoom
+     * grid's mtime is that of its newest part, so its own stamp
+     * covers it, but a level-0 image also depends on its
+     * neighbours, for tile transitions along the edges. */
+    public static class GridImage {
+	public static long stamp(DataGrid... grids) {
+	    long h = 0;
+	    for(DataGrid grid : grids) {
+		h *= 31;
+		if(grid == null)
+		    continue;
+		h += grid.mtime;
+		for(TileInfo set : grid.tilesets)
+		    h = (h * 31) + ((set.res.name.hashCode() * 31) + set.res.ver);
+	    }
+	    return(h);
+	}
+
+	private static byte[] pixels(BufferedImage img) {
+	    WritableRaster raster = img.getRaster();
+	    if(!(raster.getDataBuffer() instanceof DataBufferByte) || (raster.getNumBands() != 4))
+		return(null);
+	    byte[] data = ((DataBufferByte)raster.getDataBuffer()).getData();
+	    if(data.length != img.getWidth() * img.getHeight() * 4)
+		return(null);
+	    return(data);
+	}
+
+	public static void save(MapFile file, long seg, int lvl, Coord sc, long stamp, BufferedImage img) {
+	    byte[] data = pixels(img);
+	    if(data == null)
+		return;
+	    OutputStream fp;
+	    try {
+		fp = file.sstore("img-%x-%d-%d-%d", seg, lvl, sc.x, sc.y);
+	    } catch(IOException e) {
+		warn(e, "could not store map image (%d, %d) in %x@%d: %s", sc.x, sc.y, seg, lvl, e);
+		return;
+	    }
+	    try(StreamMessage out = new StreamMessage(fp)) {
+		out.adduint8(2);
+		out.addint64(stamp);
+		out.addcoord(Coord.of(img.getWidth(), img.getHeight()));
+		ZMessage z = new ZMessage(out);
+		z.addbytes(data);
+		z.finish();
+	    } catch(StreamMessage.IOError e) {
+		warn(e, "could not store map image (%d, %d) in %x@%d: %s", sc.x, sc.y, seg, lvl, e);
+	    }
+	}
+
+	public static BufferedImage load(MapFile file, long seg, int lvl, Coord sc, long stamp) {
+	    InputStream fp;
+	    try {
+		fp = file.sfetch("img-%x-%d-%d-%d", seg, lvl, sc.x, sc.y);
+	    } catch(FileNotFoundException e) {
+		return(null);
+	    } catch(IOException e) {
+		warn(e, "error when locating map image (%d, %d) in %x@%d: %s", sc.x, sc.y, seg, lvl, e);
+		return(null);
+	    }
+	    try(StreamMessage data = new StreamMessage(fp)) {
+		if(data.eom())
+		    return(null);
+		int ver = data.uint8();
+		if(ver != 2)
+		    return(null);
+		if(data.int64() != stamp)
+		    return(null);
+		Coord sz = data.coord();
+		WritableRaster buf = PUtils.imgraster(sz);
+		new ZMessage(data).bytes(((DataBufferByte)buf.getDataBuffer()).getData());
+		return(PUtils.rasterimg(buf));
+	    } catch(Message.BinError e) {
+		warn(e, "could not load map image for (%d, %d) in %x@%d: %s", sc.x, sc.y, seg, lvl, e);
+		return(null);
+	    }
+	}
+    }
+
     public static class ZoomCoord {
 	public final int lvl;
 	public final Coord c;
@@ -1639,56 +1736,95 @@ public class MapFile {
     }
 
     private static final byte[] EXPORT_SIG = "Haven Mapfile 1".getBytes(Utils.ascii);
+    /* Grids are encoded and decoded for export and import on a pool
+     * of their own, so that neither the transfer nor the minimap
+     * holds up the other, and at most XFERWINDOW grids are in
+     * flight at any time to keep memory bounded. */
+    private static final int XFERWINDOW = 64;
+    private Defer xferpool = null;
+    private Defer xferpool() {
+	synchronized(this) {
+	    if(xferpool == null)
+		xferpool = new Defer(Thread.currentThread().getThreadGroup(), "Map transfer",
+				     Math.max(2, Runtime.getRuntime().availableProcessors() - 1));
+	    return(xferpool);
+	}
+    }
+
+    private static <T> void cancelall(Collection<Defer.Future<T>> window) {
+	for(Defer.Future<T> f : window)
+	    f.cancel();
+	window.clear();
+    }
+
+    private byte[] exportgrid(long segid, Coord sc, long id) {
+	Grid grid = Grid.load(this, id);
+	if(grid == null) {
+	    /* This /should/ never happen, but for unknown
+	     * reasons (crashes? reboots?) some grids can be
+	     * included but missing. It's not like they'll be
+	     * coming back by any other means, however, so
+	     * just ignore them here. */
+	    return(null);
+	}
+	MessageBuf buf = new MessageBuf();
+	buf.adduint8(4);
+	buf.addint64(id);
+	buf.addint64(segid);
+	buf.addint64(grid.mtime);
+	buf.addcoord(sc);
+	buf.addint32(cmaps.x * cmaps.y);
+	DataGrid.savetiles(buf, grid.tilesets, grid.tiles);
+	DataGrid.savez(buf, grid.zmap);
+	DataGrid.saveols(buf, grid.ols);
+	return(buf.fin());
+    }
+
     public void export(Message out, ExportFilter filter, ExportStatus prog) throws InterruptedException {
 	if(prog == null) prog = new ExportStatus() {};
 	out.addbytes(EXPORT_SIG);
 	ZMessage zout = new ZMessage(out);
 	Collection<Long> segbuf = locked((Collection<Long> c) -> new ArrayList<>(c), lock.readLock()).apply(knownsegs);
+	Defer pool = xferpool();
+	Deque<Defer.Future<byte[]>> window = new ArrayDeque<>();
 	int nseg = 0;
-	for(Long sid : segbuf) {
-	    if(!filter.includeseg(sid))
-		continue;
-	    Segment seg;
-	    Collection<Pair<Coord, Long>> gridbuf = new ArrayList<>();
-	    lock.readLock().lock();
-	    try {
-		seg = segments.get(sid);
-		for(Map.Entry<Coord, Long> gd : seg.map.entrySet()) {
-		    if(filter.includegrid(seg, gd.getKey(), gd.getValue()))
-			gridbuf.add(new Pair<>(gd.getKey(), gd.getValue()));
-		}
-	    } finally {
-		lock.readLock().unlock();
-	    }
-	    int ngrid = 0;
-	    for(Pair<Coord, Long> gd : gridbuf) {
-		prog.grid(nseg, segbuf.size(), ngrid++, gridbuf.size());
-		Grid grid = Grid.load(this, gd.b);
-		if(grid == null) {
-		    /* This /should/ never happen, but for unknown
-		     * reasons (crashes? reboots?) some grids can be
-		     * included but missing. It's not like they'll be
-		     * coming back by any other means, however, so
-		     * just ignore them here. */
+	try {
+	    for(Long sid : segbuf) {
+		if(!filter.includeseg(sid))
 		    continue;
+		Segment seg;
+		Collection<Pair<Coord, Long>> gridbuf = new ArrayList<>();
+		lock.readLock().lock();
+		try {
+		    seg = segments.get(sid);
+		    for(Map.Entry<Coord, Long> gd : seg.map.entrySet()) {
+			if(filter.includegrid(seg, gd.getKey(), gd.getValue()))
+			    gridbuf.add(new Pair<>(gd.getKey(), gd.getValue()));
+		    }
+		} finally {
+		    lock.readLock().unlock();
 		}
-		MessageBuf buf = new MessageBuf();
-		buf.adduint8(4);
-		buf.addint64(gd.b);
-		buf.addint64(seg.id);
-		buf.addint64(grid.mtime);
-		buf.addcoord(gd.a);
-		buf.addint32(cmaps.x * cmaps.y);
-		DataGrid.savetiles(buf, grid.tilesets, grid.tiles);
-		DataGrid.savez(buf, grid.zmap);
-		DataGrid.saveols(buf, grid.ols);
-		byte[] od = buf.fin();
-		zout.addstring("grid");
-		zout.addint32(od.length);
-		zout.addbytes(od);
-		Utils.checkirq();
-	    }
-	    nseg++;
+		Iterator<Pair<Coord, Long>> grids = gridbuf.iterator();
+		int ngrid = 0;
+		while(grids.hasNext() || !window.isEmpty()) {
+		    while(grids.hasNext() && (window.size() < XFERWINDOW)) {
+			Pair<Coord, Long> gd = grids.next();
+			window.add(pool.defer(() -> exportgrid(seg.id, gd.a, gd.b)));
+		    }
+		    prog.grid(nseg, segbuf.size(), ngrid++, gridbuf.size());
+		    byte[] od = Loading.waitforint(window.peek());
+		    window.remove();
+		    if(od != null) {
+			zout.addstring("grid");
+			zout.addint32(od.length);
+			zout.addbytes(od);
+		    }
+		    Utils.checkirq();
+		}
+		nseg++;
+	    }
+	} finally {
+	    cancelall(window);
 	}
 	Collection<Marker> markbuf = locked((Collection<Marker> c) -> new ArrayList<>(c), lock.readLock()).apply(markers);
 	int nmark = 0;
@@ -1836,8 +1972,25 @@ public class MapFile {
 	    return(chseg(ret));
 	}
 
-	void importgrid(Message data) {
-	    ImportedGrid grid = new ImportedGrid(data);
+	/* Decoding and re-encoding for storage is done on the
+	 * transfer pool; only the segment bookkeeping below needs to
+	 * happen in order, under the lock. */
+	class Decoded {
+	    final ImportedGrid grid;
+	    final Grid rgrid;
+	    final byte[] saved;
+
+	    Decoded(byte[] data) {
+		grid = new ImportedGrid(new MessageBuf(data));
+		rgrid = grid.togrid();
+		MessageBuf buf = new MessageBuf();
+		rgrid.save(buf);
+		saved = buf.fin();
+	    }
+	}
+
+	void importgrid(Decoded dec) {
+	    ImportedGrid grid = dec.grid;
 	    ImportedSegment seg = segs.get(grid.segid);
 	    if(seg == null) {
 		segs.put(grid.segid, seg = new ImportedSegment());
@@ -1860,10 +2013,14 @@ public class MapFile {
 	    }
 	    Segment rseg;
 	    if(filter.includegrid(grid, info != null)) {
+		Grid rgrid = dec.rgrid;
+		try(OutputStream fp = sstore("grid-%x", rgrid.id)) {
+		    fp.write(dec.saved);
+		} catch(IOException e) {
+		    throw(new StreamMessage.IOError(e));
+		}
 		lock.writeLock().lock();
 		try {
-		    Grid rgrid = grid.togrid();
-		    rgrid.save(MapFile.this);
 		    if(seg.noff == null) {
 			if(info == null) {
 			    rseg = chseg(new Segment(seg.nseg = grid.gid));
@@ -1960,22 +2117,43 @@ public class MapFile {
 	    }
 	}
 
+	void applygrid(Defer.Future<Decoded> dec) throws InterruptedException {
+	    try {
+		try {
+		    importgrid(Loading.waitforint(dec));
+		} catch(Defer.DeferredException e) {
+		    if(e.getCause() instanceof RuntimeException)
+			throw((RuntimeException)e.getCause());
+		    throw(e);
+		}
+	    } catch(RuntimeException exc) {
+		filter.handleerror(exc, "grid");
+	    }
+	}
+
 	void reimport(Message data) throws InterruptedException {
 	    if(!Arrays.equals(EXPORT_SIG, data.bytes(EXPORT_SIG.length)))
 		throw(new Message.FormatError("Invalid map file format"));
 	    data = new ZMessage(data);
+	    Defer pool = xferpool();
+	    Deque<Defer.Future<Decoded>> window = new ArrayDeque<>();
 	    try {
 		while(!data.eom()) {
 		    String type = data.string();
 		    int len = data.int32();
-		    Message lay = new LimitMessage(data, len);
 		    if(type.equals("grid")) {
-			try {
-			    importgrid(lay);
-			} catch(RuntimeException exc) {
-			    filter.handleerror(exc, "grid");
-			}
-		    } else if(type.equals("mark")) {
+			byte[] raw = data.bytes(len);
+			if(window.size() >= XFERWINDOW)
+			    applygrid(window.remove());
+			window.add(pool.defer(() -> new Decoded(raw)));
+			Utils.checkirq();
+			continue;
+		    }
+		    /* Markers refer to the segments of preceding grids. */
+		    while(!window.isEmpty())
+			applygrid(window.remove());
+		    Message lay = new LimitMessage(data, len);
+		    if(type.equals("mark")) {
 			try {
 			    importmark(lay);
 			} catch(RuntimeException exc) {
@@ -1991,9 +2169,13 @@ public class MapFile {
 		    lay.skip();
 		    Utils.checkirq();
 		}
+		while(!window.isEmpty())
+		    applygrid(window.remove());
 	    } catch(InterruptedException e) {
 		flush();
 		throw(e);
+	    } finally {
+		cancelall(window);
 	    }
 	    flush();
 	}
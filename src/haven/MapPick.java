@@ -0,0 +1,704 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+
+package haven;
+
+import java.util.*;
+import haven.render.*;
+import static haven.MCache.tilesz;
+
+/* CPU-side picking for the map view: a ray cast against the
+ * terrain triangles, and a bounding-volume hierarchy over
+ * conservative bounds of all gobs. Since the bounds only ever
+ * overestimate what a gob draws, a ray that reaches the ground
+ * without entering any of them can be resolved here without
+ * rendering anything. Anything else is left to the click buffer,
+ * as is anything near a gob that draws something that cannot be
+ * bounded, and any ray crossing ridge or cave walls, which the
+ * heightfield does not describe. */
+public class MapPick {
+    public static final Config.Variable<Boolean> enabled = Config.Variable.propb("haven.cpupick", true);
+    /* Sprites get scaled, so bounds are grown generously. */
+    private static final float GROW = 1.5f, MARGIN = 2.0f;
+    private static final float[] NOEXT = {};
+    private static final int LEAF = 4;
+    private static final Map<Resource, float[]> extents = new HashMap<>();
+    private static final Map<Pair<FastMesh, Skeleton>, float[]> reaches = new HashMap<>();
+    public final MCache map;
+    public final OCache oc;
+    private Gob[] lgobs = null;
+    private int lchseq;
+    /* Gobs in the hierarchy, along with what their bounds were
+     * computed from. */
+    private Gob[] items = {};
+    private Coord2d[] irc = {};
+    private Gob.AttrSet[] iat = {};
+    private float[] ib = {};
+    /* Moving and composite gobs, gobs with overlays, and gobs
+     * that could not be bounded yet, are checked individually on
+     * every pick instead. */
+    private Gob[] dynamic = {};
+    private float[] nb = {};
+    private int[] nl = {}, nn = {};
+    private int[] stack = new int[64];
+    public int ncpu, ngpu, nbuild;
+
+    public MapPick(MCache map, OCache oc) {
+	this.map = map;
+	this.oc = oc;
+    }
+
+    public static class Ray {
+	public final double ox, oy, oz, dx, dy, dz;
+	/* The size of a screen pixel at either end. */
+	public final double pn, pf;
+
+	public Ray(double ox, double oy, double oz, double dx, double dy, double dz, double pn, double pf) {
+	    this.ox = ox; this.oy = oy; this.oz = oz;
+	    this.dx = dx; this.dy = dy; this.dz = dz;
+	    this.pn = pn; this.pf = pf;
+	}
+
+	public double x(double t) {return(ox + (dx * t));}
+	public double y(double t) {return(oy + (dy * t));}
+	public double z(double t) {return(oz + (dz * t));}
+	public double px(double t) {return(pn + ((pf - pn) * t));}
+
+	/* The segment from the near to the far plane under screen
+	 * coordinate sc, in map coordinates, running from t = 0 to
+	 * t = 1. */
+	public static Ray unproject(Matrix4f proj, Matrix4f view, Coord sc, Coord sz) {
+	    Matrix4f inv = proj.mul(view).invert();
+	    float nx = ((2.0f * (sc.x + 0.5f)) / sz.x) - 1.0f;
+	    float ny = 1.0f - ((2.0f * (sc.y + 0.5f)) / sz.y);
+	    float nw = 2.0f / sz.x;
+	    float[] a = inv.mul4(new float[] {nx, ny, -1, 1}), an = inv.mul4(new float[] {nx + nw, ny, -1, 1});
+	    float[] b = inv.mul4(new float[] {nx, ny, 1, 1}), bn = inv.mul4(new float[] {nx + nw, ny, 1, 1});
+	    double ax = a[0] / a[3], ay = -a[1] / a[3], az = a[2] / a[3];
+	    double bx = b[0] / b[3], by = -b[1] / b[3], bz = b[2] / b[3];
+	    double pn = Math.sqrt(Math.pow((an[0] / an[3]) - ax, 2) + Math.pow((-an[1] / an[3]) - ay, 2) + Math.pow((an[2] / an[3]) - az, 2));
+	    double pf = Math.sqrt(Math.pow((bn[0] / bn[3]) - bx, 2) + Math.pow((-bn[1] / bn[3]) - by, 2) + Math.pow((bn[2] / bn[3]) - bz, 2));
+	    return(new Ray(ax, ay, az, bx - ax, by - ay, bz - az, pn, pf));
+	}
+    }
+
+    public static class Result {
+	/* Null if the ray did not hit the map at all. */
+	public final Coord2d mc;
+
+	public Result(Coord2d mc) {
+	    this.mc = mc;
+	}
+    }
+
+    /* The range of t for which the ray is inside the given map
+     * area, or null if it never is. */
+    private static double[] clip(Ray r, Area wa) {
+	double t0 = 0, t1 = 1;
+	double[] o = {r.ox, r.oy}, d = {r.dx, r.dy};
+	double[] lo = {wa.ul.x, wa.ul.y}, hi = {wa.br.x, wa.br.y};
+	for(int i = 0; i < 2; i++) {
+	    if(d[i] == 0) {
+		if((o[i] < lo[i]) || (o[i] >= hi[i]))
+		    return(null);
+		continue;
+	    }
+	    double a = (lo[i] - o[i]) / d[i], b = (hi[i] - o[i]) / d[i];
+	    t0 = Math.max(t0, Math.min(a, b));
+	    t1 = Math.min(t1, Math.max(a, b));
+	}
+	return((t0 < t1) ? new double[] {t0, t1} : null);
+    }
+
+    private static boolean split(double z00, double z10, double z01, double z11) {
+	return(Math.abs(z00 - z11) > Math.abs(z10 - z01));
+    }
+
+    /* The height of the terrain as MapMesh triangulates it, which
+     * is what the click buffer has drawn, rather than as
+     * MCache.getcz interpolates it. */
+    private double surfz(double px, double py) {
+	double tw = tilesz.x, th = tilesz.y;
+	int ux = Utils.floordiv(px, tw), uy = Utils.floordiv(py, th);
+	double sx = (px - (ux * tw)) / tw, sy = (py - (uy * th)) / th;
+	float z00 = (float)map.getfz(ux, uy), z10 = (float)map.getfz(ux + 1, uy);
+	float z01 = (float)map.getfz(ux, uy + 1), z11 = (float)map.getfz(ux + 1, uy + 1);
+	if(split(z00, z10, z01, z11)) {
+	    if(sy >= sx)
+		return(z00 + (sy * (z01 - z00)) + (sx * (z11 - z01)));
+	    return(z00 + (sx * (z10 - z00)) + (sy * (z11 - z10)));
+	} else {
+	    if(sx + sy <= 1)
+		return(z00 + (sx * (z10 - z00)) + (sy * (z01 - z00)));
+	    return(z11 + ((1 - sx) * (z01 - z11)) + ((1 - sy) * (z10 - z11)));
+	}
+    }
+
+    private double above(Ray r, double t) {
+	return(r.z(t) - surfz(r.x(t), r.y(t)));
+    }
+
+    /* The next t after t0 at which the ray crosses a tile edge or
+     * the diagonal of a tile, so that the terrain under it is a
+     * single plane in between. */
+    private double next(Ray r, double t0) {
+	double tw = tilesz.x, th = tilesz.y;
+	double ret = Double.POSITIVE_INFINITY;
+	double x = r.x(t0), y = r.y(t0);
+	if(r.dx > 0)
+	    ret = Math.min(ret, t0 + ((((Math.floor(x / tw) + 1) * tw) - x) / r.dx));
+	else if(r.dx < 0)
+	    ret = Math.min(ret, t0 + ((((Math.ceil(x / tw) - 1) * tw) - x) / r.dx));
+	if(r.dy > 0)
+	    ret = Math.min(ret, t0 + ((((Math.floor(y / th) + 1) * th) - y) / r.dy));
+	else if(r.dy < 0)
+	    ret = Math.min(ret, t0 + ((((Math.ceil(y / th) - 1) * th) - y) / r.dy));
+	ret = Math.max(ret, Math.nextUp(t0));
+	double mt = Double.isInfinite(ret) ? t0 : ((t0 + ret) / 2);
+	int ux = Utils.floordiv(r.x(mt), tw), uy = Utils.floordiv(r.y(mt), th);
+	/* The diagonal is where sy - sx or sx + sy - 1 is zero. */
+	double f0, fd;
+	if(split(map.getfz(ux, uy), map.getfz(ux + 1, uy), map.getfz(ux, uy + 1), map.getfz(ux + 1, uy + 1))) {
+	    f0 = ((y - (uy * th)) / th) - ((x - (ux * tw)) / tw);
+	    fd = (r.dy / th) - (r.dx / tw);
+	} else {
+	    f0 = ((x - (ux * tw)) / tw) + ((y - (uy * th)) / th) - 1;
+	    fd = (r.dx / tw) + (r.dy / th);
+	}
+	if(fd != 0) {
+	    double dt = t0 - (f0 / fd);
+	    if((dt > t0) && (dt < ret))
+		ret = dt;
+	}
+	return(ret);
+    }
+
+    private static Coord tile(Ray r, double t) {
+	return(Coord.of((int)Math.floor(r.x(t) / tilesz.x), (int)Math.floor(r.y(t) / tilesz.y)));
+    }
+
+    private static final Coord[] tces = {Coord.of(0, -1), Coord.of(1, 0), Coord.of(0, 1), Coord.of(-1, 0)};
+    /* Whether a tile has walls modelled on it or along its
+     * edges. Cave walls are jittered, so they may reach a little
+     * over the tiles next to them as well. */
+    private boolean walls(Coord tc) {
+	if(haven.resutil.Ridges.brokenp(map, tc))
+	    return(true);
+	if(map.tiler(map.gettile(tc)) instanceof haven.resutil.CaveTile)
+	    return(true);
+	for(Coord ec : tces) {
+	    if(map.tiler(map.gettile(tc.add(ec))) instanceof haven.resutil.CaveTile)
+		return(true);
+	}
+	return(false);
+    }
+
+    /* Whether any tile the ray passes over between a and b, which
+     * are at most a tile apart, has walls. */
+    private boolean walls(Ray r, double a, double b, Set<Coord> seen) {
+	Coord ta = tile(r, a), tb = tile(r, b);
+	for(int y = Math.min(ta.y, tb.y); y <= Math.max(ta.y, tb.y); y++) {
+	    for(int x = Math.min(ta.x, tb.x); x <= Math.max(ta.x, tb.x); x++) {
+		Coord tc = Coord.of(x, y);
+		if(seen.add(tc) && walls(tc))
+		    return(true);
+	    }
+	}
+	return(false);
+    }
+
+    /* Where the ray first goes below the terrain within the given
+     * map area, or NaN if it does not. Throws Loading if the map
+     * is not there to be tested, and returns -1 if the ray starts
+     * out below ground or passes over walls before hitting it,
+     * neither of which can be resolved from the heightfield. */
+    public double ground(Ray r, Area wa) {
+	double[] span = clip(r, wa);
+	if(span == null)
+	    return(Double.NaN);
+	double pt = span[0], pa = above(r, pt);
+	if(pa < 0)
+	    return(-1);
+	if(pa == 0)
+	    return(pt);
+	Set<Coord> seen = new HashSet<>();
+	while(pt < span[1]) {
+	    double t = Math.min(next(r, pt), span[1]);
+	    if(walls(r, pt, t, seen))
+		return(-1);
+	    /* Both the ray and the triangle under it are linear in
+	     * between, so the crossing is exact. */
+	    double a = above(r, t);
+	    if(a <= 0)
+		return(pt + ((t - pt) * (pa / (pa - a))));
+	    pt = t;
+	    pa = a;
+	}
+	return(Double.NaN);
+    }
+
+    private static float[] box(Volume3f b) {
+	return(new float[] {b.n.x, b.n.y, b.n.z, b.p.x, b.p.y, b.p.z});
+    }
+
+    private static float[] union(float[] a, float[] b) {
+	if((a == NOEXT) || (b == NOEXT))
+	    return(NOEXT);
+	if(a == null)
+	    return(b);
+	if(b == null)
+	    return(a);
+	return(new float[] {Math.min(a[0], b[0]), Math.min(a[1], b[1]), Math.min(a[2], b[2]),
+			    Math.max(a[3], b[3]), Math.max(a[4], b[4]), Math.max(a[5], b[5])});
+    }
+
+    private static float[] xform(Matrix4f xf, float[] b) {
+	float[] ret = null;
+	for(float x : new float[] {b[0], b[3]}) {
+	    for(float y : new float[] {b[1], b[4]}) {
+		for(float z : new float[] {b[2], b[5]}) {
+		    Coord3f c = xf.mul4(Coord3f.of(x, y, z));
+		    ret = union(ret, new float[] {c.x, c.y, c.z, c.x, c.y, c.z});
+		}
+	    }
+	}
+	return(ret);
+    }
+
+    /* The box {nx, ny, nz, px, py, pz}, around the origin, of what
+     * a resource draws in its bind pose, or an empty array if it
+     * has no meshes to tell, or draws anything that the meshes do
+     * not describe. */
+    private static float[] extent(Resource res) {
+	synchronized(extents) {
+	    float[] ret = extents.get(res);
+	    if(ret == null) {
+		if(!res.layers(MeshAnim.Res.class).isEmpty() || !res.layers(RenderLink.Res.class).isEmpty()) {
+		    ret = NOEXT;
+		} else {
+		    for(FastMesh.MeshRes m : res.layers(FastMesh.MeshRes.class))
+			ret = union(ret, box(m.m.bounds()));
+		    if(ret == null) {
+			ret = NOEXT;
+		    } else {
+			for(Resource.Neg neg : res.layers(Resource.Neg.class)) {
+			    ret = union(ret, new float[] {Math.min(neg.ac.x, neg.bc.x), Math.min(neg.ac.y, neg.bc.y), 0,
+							  Math.max(neg.ac.x, neg.bc.x), Math.max(neg.ac.y, neg.bc.y), 0});
+			}
+		    }
+		}
+		extents.put(res, ret);
+	    }
+	    return(ret);
+	}
+    }
+
+    /* How far the vertices of a skinned mesh reach from the bind
+     * position of each bone in its bone data, or -1 for bones that
+     * no vertex is weighted to. The last element is non-zero if
+     * some vertex is weighted to no bone at all, which skinning
+     * collapses to the origin. Since a pose only moves each bone
+     * rigidly, and every vertex is blended between the positions
+     * its bones move it to, a posed vertex is always within that
+     * distance of the posed position of one of its bones. */
+    private static float[] reach(FastMesh m, Skeleton skel) {
+	Pair<FastMesh, Skeleton> key = new Pair<>(m, skel);
+	synchronized(reaches) {
+	    float[] ret = reaches.get(key);
+	    if(ret == null) {
+		PoseMorph.BoneData bd = m.vert.buf(PoseMorph.BoneData.class);
+		VertexBuf.VertexData vd = m.vert.buf(VertexBuf.VertexData.class);
+		float[][] bind = new float[bd.names.length][];
+		for(int i = 0; i < bind.length; i++) {
+		    Skeleton.Bone bone = skel.bones.get(bd.names[i]);
+		    if(bone == null)
+			throw(new RuntimeException("Bone " + bd.names[i] + " not found in skeleton " + skel));
+		    bind[i] = skel.bindpose.gpos[bone.idx];
+		}
+		ret = new float[bind.length + 1];
+		Arrays.fill(ret, 0, bind.length, -1);
+		int bn = bd.elfmt.nc, vn = vd.elfmt.nc;
+		for(int i = 0; i < m.num * 3; i++) {
+		    int v = m.indb.get(i);
+		    float x = vd.data.get(v * vn), y = vd.data.get((v * vn) + 1), z = vd.data.get((v * vn) + 2);
+		    boolean any = false;
+		    for(int o = 0; o < bn; o++) {
+			int b = bd.data.get((v * bn) + o);
+			if(b < 0)
+			    continue;
+			float[] p = bind[b];
+			ret[b] = Math.max(ret[b], (float)Math.sqrt(((x - p[0]) * (x - p[0])) + ((y - p[1]) * (y - p[1])) + ((z - p[2]) * (z - p[2]))));
+			any = true;
+		    }
+		    if(!any)
+			ret[bind.length] = 1;
+		}
+		reaches.put(key, ret);
+	    }
+	    return(ret);
+	}
+    }
+
+    /* The box of a mesh in the given pose, if skinned by it. */
+    private static float[] posed(Skeleton.Pose pose, FastMesh m, boolean morphed) {
+	if(!morphed)
+	    return(box(m.bounds()));
+	Skeleton skel = pose.skel();
+	float[] reach = reach(m, skel);
+	String[] names = m.vert.buf(PoseMorph.BoneData.class).names;
+	float[] ret = null;
+	for(int i = 0; i < names.length; i++) {
+	    float d = reach[i];
+	    if(d < 0)
+		continue;
+	    float[] p = pose.gpos[skel.bones.get(names[i]).idx];
+	    ret = union(ret, new float[] {p[0] - d, p[1] - d, p[2] - d, p[0] + d, p[1] + d, p[2] + d});
+	}
+	if(reach[names.length] != 0)
+	    ret = union(ret, new float[6]);
+	return(ret);
+    }
+
+    /* SkelSprites draw their meshes in their current pose, which
+     * their own resource's extent knows nothing of. */
+    private static float[] posed(SkelSprite spr) {
+	if(extent(spr.res) == NOEXT)
+	    return(NOEXT);
+	float[] ret = null;
+	for(FastMesh.MeshRes m : spr.res.layers(FastMesh.MeshRes.class))
+	    ret = union(ret, posed(spr.pose, m.m, PoseMorph.boned(m.m)));
+	return(ret);
+    }
+
+    private static float[] extent(Sprite spr) {
+	if((spr instanceof SkelSprite) && (((SkelSprite)spr).pose != null))
+	    return(posed((SkelSprite)spr));
+	return((spr.res == null) ? NOEXT : extent(spr.res));
+    }
+
+    /* Composite bodies are always skinned by the composite's own
+     * pose, and equipment is placed wherever its bone currently
+     * puts it. */
+    private static float[] extent(Composite d) {
+	Composited comp = d.comp;
+	if(comp == null)
+	    throw(new Loading());
+	float[] ret = null;
+	for(Composited.Model mod : comp.mod)
+	    ret = union(ret, posed(comp.pose, mod.m, true));
+	if(ret == null)
+	    throw(new Loading());
+	for(Composited.Equ<?> e : comp.equ) {
+	    if(e instanceof Composited.LightEqu)
+		continue;
+	    if(!(e instanceof Composited.SpriteEqu))
+		return(NOEXT);
+	    float[] b = extent(((Composited.SpriteEqu)e).r);
+	    if((b == null) || (b == NOEXT)) {
+		ret = union(ret, b);
+		continue;
+	    }
+	    BufPipe buf = new BufPipe();
+	    Pipe.Op st = e.state();
+	    if(st != null)
+		st.apply(buf);
+	    Location.Chain loc = buf.get(Homo3D.loc);
+	    ret = union(ret, (loc == null) ? b : xform(loc.fin(Matrix4f.id), b));
+	}
+	return(ret);
+    }
+
+    /* The box, in the gob's own frame, of everything a gob renders
+     * in 3D, all of which is clickable, or an empty array if some
+     * of it cannot be bounded. */
+    private static float[] extent(Gob g) {
+	float[] ret = null;
+	Drawable d = g.drawable;
+	Gob.AttrSet attrs = g.attrs();
+	for(int i = 0; i < attrs.size(); i++) {
+	    GAttrib a = attrs.get(i);
+	    if(a == d) {
+		if(d instanceof Composite) {
+		    ret = union(ret, extent((Composite)d));
+		} else if(d instanceof ResDrawable) {
+		    ret = union(ret, extent(((ResDrawable)d).spr));
+		} else {
+		    Resource res = d.getres();
+		    ret = union(ret, (res == null) ? NOEXT : extent(res));
+		}
+	    } else if((a instanceof RenderTree.Node) && !(a instanceof PView.Render2D) && !a.skipRender) {
+		return(NOEXT);
+	    }
+	}
+	List<Gob.Overlay> ols;
+	synchronized(g.ols) {
+	    ols = new ArrayList<>(g.ols);
+	}
+	for(Gob.Overlay ol : ols) {
+	    Sprite spr = ol.spr;
+	    /* Not drawn yet, but may well be by the time of the next
+	     * pick, and gobs with overlays are not kept in the
+	     * hierarchy anyway. */
+	    if(spr == null)
+		return(NOEXT);
+	    if(spr instanceof PView.Render2D)
+		continue;
+	    ret = union(ret, extent(spr));
+	}
+	return(ret);
+    }
+
+    /* Writes the world-space bounds of a gob into buf. Returns
+     * false if they cannot be had right now, or at all, and true
+     * without writing anything if the gob draws nothing. Gobs
+     * are rotated about their origin, so the box is widened to a
+     * circle around it. */
+    private static boolean bounds(Gob g, float[] buf, int off) {
+	try {
+	    float[] e = extent(g);
+	    if(e == NOEXT)
+		return(false);
+	    if(e == null) {
+		Arrays.fill(buf, off, off + 6, Float.NaN);
+		return(true);
+	    }
+	    float r = 0;
+	    for(float x : new float[] {e[0], e[3]}) {
+		for(float y : new float[] {e[1], e[4]})
+		    r = Math.max(r, (float)Math.hypot(x, y));
+	    }
+	    r = (r * GROW) + MARGIN;
+	    float nz = (Math.min(e[2], 0) * GROW) - MARGIN, pz = (Math.max(e[5], 0) * GROW) + MARGIN;
+	    Coord3f c = g.getc();
+	    buf[off + 0] = c.x - r; buf[off + 3] = c.x + r;
+	    buf[off + 1] = c.y - r; buf[off + 4] = c.y + r;
+	    buf[off + 2] = c.z + nz; buf[off + 5] = c.z + pz;
+	    return(true);
+	} catch(Loading l) {
+	    return(false);
+	}
+    }
+
+    /* Gobs whose bounds are liable to change without their
+     * attributes changing. */
+    private static boolean dynamic(Gob g) {
+	Drawable d = g.drawable;
+	return((g.getattr(Moving.class) != null) || (d instanceof Composite) || !g.ols.isEmpty() ||
+	       ((d instanceof ResDrawable) && (((ResDrawable)d).spr instanceof SkelSprite)));
+    }
+
+    private static boolean hit(Ray r, float[] b, int off, double tmax, double m) {
+	double t0 = 0, t1 = tmax;
+	double[] o = {r.ox, r.oy, r.oz}, d = {r.dx, r.dy, r.dz};
+	for(int i = 0; i < 3; i++) {
+	    double lo = b[off + i] - m, hi = b[off + i + 3] + m;
+	    if(d[i] == 0) {
+		if((o[i] < lo) || (o[i] > hi))
+		    return(false);
+		continue;
+	    }
+	    double inv = 1.0 / d[i];
+	    double a = (lo - o[i]) * inv, c = (hi - o[i]) * inv;
+	    t0 = Math.max(t0, Math.min(a, c));
+	    t1 = Math.min(t1, Math.max(a, c));
+	    if(t0 > t1)
+		return(false);
+	}
+	return(true);
+    }
+
+    private boolean valid(Gob[] gobs) {
+	if((gobs != lgobs) || (map.chseq != lchseq))
+	    return(false);
+	for(int i = 0; i < items.length; i++) {
+	    Gob g = items[i];
+	    if((g.rc != irc[i]) || (g.attrs() != iat[i]) || dynamic(g))
+		return(false);
+	}
+	return(true);
+    }
+
+    private float cent(int item, int axis) {
+	return(ib[(item * 6) + axis] + ib[(item * 6) + axis + 3]);
+    }
+
+    /* Partitions ord[a..b) so that the n:th element is in place by
+     * its centroid on the given axis. */
+    private void select(int[] ord, int a, int b, int n, int axis) {
+	while(b - a > 1) {
+	    float pv = cent(ord[(a + b) >>> 1], axis);
+	    int i = a, j = b - 1;
+	    while(i <= j) {
+		while(cent(ord[i], axis) < pv) i++;
+		while(cent(ord[j], axis) > pv) j--;
+		if(i <= j) {
+		    int t = ord[i]; ord[i] = ord[j]; ord[j] = t;
+		    i++; j--;
+		}
+	    }
+	    if(n <= j)
+		b = j + 1;
+	    else if(n >= i)
+		a = i;
+	    else
+		return;
+	}
+    }
+
+    private int nnodes;
+    private int build(int[] ord, int a, int b) {
+	int node = nnodes++;
+	float[] box = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+	for(int i = a; i < b; i++) {
+	    int o = ord[i] * 6;
+	    for(int u = 0; u < 3; u++) {
+		box[u] = Math.min(box[u], ib[o + u]);
+		box[u + 3] = Math.max(box[u + 3], ib[o + u + 3]);
+	    }
+	}
+	System.arraycopy(box, 0, nb, node * 6, 6);
+	if(b - a <= LEAF) {
+	    nl[node] = a;
+	    nn[node] = b - a;
+	    return(node);
+	}
+	int axis = 0;
+	for(int u = 1; u < 3; u++) {
+	    if(box[u + 3] - box[u] > box[axis + 3] - box[axis])
+		axis = u;
+	}
+	int m = (a + b) >>> 1;
+	select(ord, a, b, m, axis);
+	nn[node] = 0;
+	build(ord, a, m);
+	nl[node] = build(ord, m, b);
+	return(node);
+    }
+
+    private void rebuild(Gob[] gobs) {
+	List<Gob> st = new ArrayList<>(gobs.length), dyn = new ArrayList<>();
+	float[] buf = new float[gobs.length * 6];
+	for(Gob g : gobs) {
+	    /* Gobs that draw nothing are kept with the dynamic ones,
+	     * so that they are noticed once they do. */
+	    if(!dynamic(g) && bounds(g, buf, st.size() * 6) && !Float.isNaN(buf[st.size() * 6]))
+		st.add(g);
+	    else
+		dyn.add(g);
+	}
+	int n = st.size();
+	int[] ord = new int[n];
+	for(int i = 0; i < n; i++)
+	    ord[i] = i;
+	ib = buf;
+	nnodes = 0;
+	nb = new float[Math.max(n * 2, 1) * 6];
+	nl = new int[Math.max(n * 2, 1)];
+	nn = new int[nl.length];
+	if(n > 0)
+	    build(ord, 0, n);
+	/* Leaves refer to ranges of ord, so put the items in that
+	 * order. */
+	items = new Gob[n];
+	irc = new Coord2d[n];
+	iat = new Gob.AttrSet[n];
+	float[] sb = new float[n * 6];
+	for(int i = 0; i < n; i++) {
+	    Gob g = st.get(ord[i]);
+	    items[i] = g;
+	    irc[i] = g.rc;
+	    iat[i] = g.attrs();
+	    System.arraycopy(buf, ord[i] * 6, sb, i * 6, 6);
+	}
+	ib = sb;
+	dynamic = dyn.toArray(new Gob[0]);
+	lgobs = gobs;
+	lchseq = map.chseq;
+	nbuild++;
+    }
+
+    /* Whether the ray, up to tmax, comes within fuzz pixels of the
+     * bounds of any gob. */
+    public boolean anygob(Ray r, double tmax, int fuzz) {
+	Gob[] gobs = oc.ticklist();
+	if(!valid(gobs))
+	    rebuild(gobs);
+	double m = fuzz * Math.max(r.px(0), r.px(tmax));
+	float[] buf = new float[6];
+	for(Gob g : dynamic) {
+	    if(!bounds(g, buf, 0))
+		return(true);
+	    if(!Float.isNaN(buf[0]) && hit(r, buf, 0, tmax, m))
+		return(true);
+	}
+	if(items.length == 0)
+	    return(false);
+	int sp = 0;
+	stack[sp++] = 0;
+	while(sp > 0) {
+	    int node = stack[--sp];
+	    if(!hit(r, nb, node * 6, tmax, m))
+		continue;
+	    if(nn[node] > 0) {
+		for(int i = nl[node], e = i + nn[node]; i < e; i++) {
+		    if(hit(r, ib, i * 6, tmax, m))
+			return(true);
+		}
+	    } else {
+		if(sp + 2 > stack.length)
+		    stack = Arrays.copyOf(stack, stack.length * 2);
+		stack[sp++] = node + 1;
+		stack[sp++] = nl[node];
+	    }
+	}
+	return(false);
+    }
+
+    /* Resolves a pick, or returns null if the click buffer has to
+     * be consulted. Gobs are only considered if fuzz is
+     * non-negative. */
+    public synchronized Result pick(Ray r, Area wa, int fuzz) {
+	Result ret = null;
+	try {
+	    double t = ground(r, wa);
+	    if(Double.isNaN(t))
+		ret = new Result(null);
+	    else if((t >= 0) && !((fuzz >= 0) && anygob(r, t, fuzz)))
+		ret = new Result(Coord2d.of(r.x(t), r.y(t)));
+	} catch(Loading l) {
+	}
+	if(ret != null)
+	    ncpu++;
+	else
+	    ngpu++;
+	return(ret);
+    }
+
+    public String stats() {
+	return(String.format("%d cpu, %d gpu, %d static, %d dynamic, %d builds", ncpu, ngpu, items.length, dynamic.length, nbuild));
+    }
+}
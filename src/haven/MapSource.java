@@ -53,6 +53,12 @@ public interface MapSource {
     }
 
     public static BufferedImage drawmap(MapSource m, Area a) {
+	return(drawmap(m, a, null));
+    }
+
+    /* Sets failed[0] if some ridge could not be drawn, for whoever
+     * would keep the result around. */
+    public static BufferedImage drawmap(MapSource m, Area a, boolean[] failed) {
 	Coord sz = a.sz();
 	BufferedImage[] texes = new BufferedImage[256];
 	BufferedImage buf = TexI.mkbuf(sz);
@@ -93,6 +99,8 @@ public interface MapSource {
 		    /* XXX: Tileset resources loaded from cache can contain outdated
 		     * and illegal references. Catching them and ignoring them here
 		     * seems like an ugly hack, but what is the better alternative? */
+		    if(failed != null)
+			failed[0] = true;
 		}
 	    }
 	}
@@ -731,6 +731,7 @@ public class MapView extends PView implements DTarget, Console.Directory, Widget
     }
 
     public void dispose() {
+	AnimLOD.unview(this);
 	gobs.slot.remove();
 	clmaplist.dispose();
 	clobjlist.dispose();
@@ -878,15 +879,19 @@ public class MapView extends PView implements DTarget, Console.Directory, Widget
 	    Grid() {this(true);}
 
 	    abstract T getcut(Coord cc);
+	    T getcut(Coord cc, int prio) {return(getcut(cc));}
 	    RenderTree.Node produce(T cut) {return((RenderTree.Node)cut);}
 
 	    void tick() {
 		if(slot == null)
 		    return;
 		Loading curload = null;
+		Coord mid = area.ul.add(area.br).div(2);
 		for(Coord cc : area) {
+		    /* Build the cuts closest to the view center first. */
+		    int prio = 8 - Math.max(Math.abs(cc.x - mid.x), Math.abs(cc.y - mid.y));
 		    try {
-			T cut = getcut(cc);
+			T cut = getcut(cc, prio);
 			Pair<T, RenderTree.Slot> cur = cuts.get(cc);
 			if((cur == null) || (cur.a != cut)) {
 			    Coord2d pc = cc.mul(MCache.cutsz).mul(tilesz);
@@ -899,7 +904,7 @@ public class MapView extends PView implements DTarget, Console.Directory, Widget
 				cur.b.remove();
 			}
 		    } catch(Loading l) {
-			l.boostprio(5);
+			l.boostprio(prio);
 			curload = l;
 		    }
 		}
@@ -945,13 +950,23 @@ public class MapView extends PView implements DTarget, Console.Directory, Widget
 		MapMesh getcut(Coord cc) {
 		    return(map.getcut(cc));
 		}
+		MapMesh getcut(Coord cc, int prio) {
+		    return(map.getcut(cc, prio));
+		}
 	    };
 	final RenderTree.Node noflav = new Nil();
 	final Grid flavobjs = new Grid<RenderTree.Node>(false) {
 		RenderTree.Node getcut(Coord cc) {
 		    return CFG.DISPLAY_FLAVOR.get() ? map.getfo(cc) : noflav;
 		}
+		RenderTree.Node getcut(Coord cc, int prio) {
+		    return CFG.DISPLAY_FLAVOR.get() ? map.getfo(cc, prio) : noflav;
+		}
 	    };
+	private Area parea = null;
+	private double jumptime = -1;
+	private boolean drawn = false;
+	public double ttv = -1;
 	final Grid<RenderTree.Node> minesweeper = new Grid<RenderTree.Node>(true) {
 	    RenderTree.Node getcut(Coord cc) {
 		return Minesweeper.getcut(ui, cc);
@@ -971,8 +986,25 @@ public class MapView extends PView implements DTarget, Console.Directory, Widget
 
 	void tick() {
 	    super.tick();
+	    if((area != null) && !area.equals(parea)) {
+		/* When the view jumps, such as on teleporting,
+		 * abandon building whatever is no longer in view. */
+		if((parea != null) && !parea.isects(area)) {
+		    map.cancelbuilds(area);
+		    jumptime = Utils.rtime();
+		}
+		parea = area;
+	    }
 	    if(area != null) {
 		main.tick();
+		if(!drawn && (main.lastload == null)) {
+		    ResTrace.mark("map view fully drawn");
+		    drawn = true;
+		}
+		if((jumptime >= 0) && (main.lastload == null)) {
+		    ttv = Utils.rtime() - jumptime;
+		    jumptime = -1;
+		}
 		if(CFG.DISPLAY_FLAVOR.get()) {flavobjs.tick();}
 		if(CFG.SHOW_MINESWEEPER_OVERLAY.get()) {minesweeper.tick();}
 	    }
@@ -1201,6 +1233,9 @@ public class MapView extends PView implements DTarget, Console.Directory, Widget
 	String ret = String.format("Tree %s", tree.stats());
 	if(back != null)
 	    ret = String.format("%s, Inst %s, Draw %s", ret, instancer.stats(), back.stats());
+	ret = String.format("%s, Build %s", ret, glob.map.buildstats());
+	if(terrain.ttv >= 0)
+	    ret = String.format("%s, TTV %.2f s", ret, terrain.ttv);
 	return(ret);
     }
 
@@ -1925,6 +1960,7 @@ public class MapView extends PView implements DTarget, Console.Directory, Widget
 	    camoff.y = (float)((Math.random() - 0.5) * shake);
 	    camoff.z = (float)((Math.random() - 0.5) * shake);
 	    camera.tick(dt);
+	    AnimLOD.view(new AnimLOD.View(this, camera.proj.fin(Matrix4f.id), camera.view.fin(Matrix4f.id), sz));
 	} catch(Loading e) {
 	    e.boostprio(5);
 	    camload = e;
@@ -2142,6 +2178,28 @@ public class MapView extends PView implements DTarget, Console.Directory, Widget
 	}
     }
 
+    private MapPick picker = null;
+    /* Resolves a click without the click buffer when the CPU-side
+     * picker can tell the answer for sure, or returns null. Gobs
+     * are picked with the given fuzz, or not at all if negative. */
+    private MapPick.Result cpupick(Coord pc, int fuzz) {
+	if(!MapPick.enabled.get() || clickdb || (placing != null))
+	    return(null);
+	Area ca = terrain.area;
+	if((ca == null) || (terrain.loading() != null))
+	    return(null);
+	if(picker == null)
+	    picker = new MapPick(glob.map, glob.oc);
+	Area wa = Area.corn(ca.ul.mul(MCache.cutsz).mul(tilesz2), ca.br.mul(MCache.cutsz).mul(tilesz2));
+	MapPick.Ray r = MapPick.Ray.unproject(camera.proj.fin(Matrix4f.id), camera.view.fin(Matrix4f.id), pc, sz);
+	return(picker.pick(r, wa, fuzz));
+    }
+
+    public String pickstats() {
+	MapPick picker = this.picker;
+	return((picker == null) ? "N/A" : picker.stats());
+    }
+
     public abstract class Maptest {
 	private final Coord pc;
 
@@ -2150,6 +2208,16 @@ public class MapView extends PView implements DTarget, Console.Directory, Widget
 	}
 
 	public void run() {
+	    MapPick.Result cpu = cpupick(pc, -1);
+	    if(cpu != null) {
+		synchronized(ui) {
+		    if(cpu.mc != null)
+			hit(pc, cpu.mc);
+		    else
+			nohit(pc);
+		}
+		return;
+	    }
 	    Environment env = ui.env;
 	    Render out = env.render();
 	    Pipe.Op basic = clickbasic(MapView.this.sz);
@@ -2182,6 +2250,12 @@ public class MapView extends PView implements DTarget, Console.Directory, Widget
 	}
 	
 	public void run() {
+	    MapPick.Result cpu = cpupick(pc, gobclfuzz);
+	    if(cpu != null) {
+		mapcl = cpu.mc;
+		done();
+		return;
+	    }
 	    Environment env = ui.env;
 	    Render out = env.render();
 	    Pipe.Op basic = clickbasic(MapView.this.sz);
@@ -2200,17 +2274,20 @@ public class MapView extends PView implements DTarget, Console.Directory, Widget
 		    if((dfl |= fl) == 3)
 			done = true;
 	    }
-	    if(done) {
-		synchronized(ui) {
-		    if(mapcl != null) {
-			if(Config.center_tile) { mapcl = mapcl.floor(tilesz).mul(tilesz).add(5, 5); }
-			if(objcl == null)
-			    hit(pc, mapcl, null);
-			else
-			    hit(pc, mapcl, objcl);
-		    } else {
-			nohit(pc);
-		    }
+	    if(done)
+		done();
+	}
+
+	private void done() {
+	    synchronized(ui) {
+		if(mapcl != null) {
+		    if(Config.center_tile) { mapcl = mapcl.floor(tilesz).mul(tilesz).add(5, 5); }
+		    if(objcl == null)
+			hit(pc, mapcl, null);
+		    else
+			hit(pc, mapcl, objcl);
+		} else {
+		    nohit(pc);
 		}
 	    }
 	}
@@ -32,6 +32,7 @@ import java.util.List;
 
 import java.util.function.*;
 import java.awt.Color;
+import java.awt.image.BufferedImage;
 import java.util.stream.Collectors;
 
 import haven.MapFile.Segment;
@@ -442,6 +443,7 @@ public class MiniMap extends Widget {
 	public final MapFile file;
 	public final Segment seg;
 	public final Coord sc;
+	public final int lvl;
 	public final Area mapext;
 	public final Indir<? extends DataGrid> gref;
 	private DataGrid cgrid = null;
@@ -452,6 +454,7 @@ public class MiniMap extends Widget {
 	    this.file = seg.file();
 	    this.seg = seg;
 	    this.sc = sc;
+	    this.lvl = lvl;
 	    this.gref = gref;
 	    mapext = Area.sized(sc.mul(cmaps.mul(1 << lvl)), cmaps.mul(1 << lvl));
 	}
@@ -512,21 +515,45 @@ public class MiniMap extends Widget {
 	    if(img_c == null) {
 		img_c = new CachedImage(grid -> {
 			if(grid instanceof MapFile.ZoomGrid) {
-			    return(Defer.later(() -> new TexI(grid.render(sc.mul(cmaps)))));
+			    return(Defer.later(() -> {
+					long stamp = MapFile.GridImage.stamp(grid);
+					BufferedImage cached = MapFile.GridImage.load(file, seg.id, lvl, sc, stamp);
+					if(cached != null)
+					    return(new TexI(cached));
+					boolean[] failed = {false};
+					BufferedImage rend = grid.render(sc.mul(cmaps), failed);
+					if(!failed[0])
+					    MapFile.GridImage.save(file, seg.id, lvl, sc, stamp, rend);
+					return(new TexI(rend));
+				}));
 			} else {
 			    return(Defer.later(new Defer.Callable<Tex>() {
 				    MapFile.View view = new MapFile.View(seg);
 
 				    public TexI call() {
+					BufferedImage rend;
+					long stamp;
+					boolean[] failed = {false};
 					try(Locked lk = new Locked(file.lock.readLock())) {
-					    for(int y = -1; y <= 1; y++) {
-						for(int x = -1; x <= 1; x++) {
+					    DataGrid[] src = new DataGrid[9];
+					    for(int y = -1, i = 0; y <= 1; y++) {
+						for(int x = -1; x <= 1; x++, i++) {
 						    view.addgrid(sc.add(x, y));
+						    src[i] = seg.grid(sc.add(x, y)).get();
 						}
 					    }
+					    stamp = MapFile.GridImage.stamp(src);
+					    BufferedImage cached = MapFile.GridImage.load(file, seg.id, 0, sc, stamp);
+					    if(cached != null)
+						return(new TexI(cached));
 					    view.fin();
-					    return(new TexI(MapSource.drawmap(view, Area.sized(sc.mul(cmaps), cmaps))));
+					    rend = MapSource.drawmap(view, Area.sized(sc.mul(cmaps), cmaps), failed);
 					}
+					/* Missing tiles are likely to be there next
+					 * time, so such renders are not kept. */
+					if(!failed[0])
+					    MapFile.GridImage.save(file, seg.id, 0, sc, stamp, rend);
+					return(new TexI(rend));
 				    }
 				}));
 			}
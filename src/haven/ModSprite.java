@@ -314,7 +314,9 @@ public class ModSprite extends Sprite implements Sprite.CUpd, EquipTarget {
     }
 
     protected void omods(Collection<Mod> buf, Gob gob) {
-	for(GAttrib attr : gob.attr.values()) {
+	Gob.AttrSet attrs = gob.attrs();
+	for(int i = 0; i < attrs.size(); i++) {
+	    GAttrib attr = attrs.get(i);
 	    if(attr instanceof Mod)
 		buf.add((Mod)attr);
 	}
@@ -67,7 +67,11 @@ public class OCache implements Iterable<Gob> {
     private Glob glob;
     private final Collection<ChangeCallback> cbs = new WeakList<ChangeCallback>();
     public final PathVisualizer paths = new PathVisualizer();
+    public final GobIndex index = new GobIndex();
     private final List<Disposable> disposables = new LinkedList<>();
+    /* The gobs to tick, only rebuilt once the set has changed. */
+    private Gob[] tickv = new Gob[0];
+    private int seq = 0, tickseq = -1;
 
     public interface ChangeCallback {
 	public void added(Gob ob);
@@ -134,7 +138,18 @@ public class OCache implements Iterable<Gob> {
 	}
     }
     
-    public synchronized Stream<Gob> stream() {return Stream.of(objs.values().toArray(new Gob[0]));}
+    public Stream<Gob> stream() {return Stream.of(ticklist());}
+
+    synchronized Gob[] ticklist() {
+	if(tickseq != seq) {
+	    List<Gob> buf = new ArrayList<>();
+	    for(Gob g : this)
+		buf.add(g);
+	    tickv = buf.toArray(new Gob[0]);
+	    tickseq = seq;
+	}
+	return(tickv);
+    }
 
     public synchronized void callback(ChangeCallback cb) {
 	cbs.add(cb);
@@ -150,6 +165,8 @@ public class OCache implements Iterable<Gob> {
 	    synchronized(this) {
 		cbs = new ArrayList<>(this.cbs);
 		objs.put(ob.id, ob);
+		seq++;
+		index.add(ob);
 	    }
 	    for(ChangeCallback cb : cbs) {
 		cb.added(ob);
@@ -162,6 +179,9 @@ public class OCache implements Iterable<Gob> {
 	Collection<ChangeCallback> cbs;
 	synchronized(this) {
 	    old = objs.remove(ob.id, ob);
+	    seq++;
+	    if(old != null)
+		index.remove(old);
 	    if((old != null) && (old != ob))
 		throw(new RuntimeException(String.format("object %d removed wrong object", ob.id)));
 	    cbs = new ArrayList<>(this.cbs);
@@ -176,20 +196,22 @@ public class OCache implements Iterable<Gob> {
     }
 
     public void ctick(double dt) {
-	ArrayList<Gob> copy = new ArrayList<Gob>();
-	synchronized(this) {
-	    for(Gob g : this)
-		copy.add(g);
-	}
-	Consumer<Gob> task = g -> {
-	    synchronized(g) {
-		g.ctick(dt);
+	stats.tick(Utils.rtime(), dt);
+	applydirty();
+	Gob[] gobs = ticklist();
+	if(!Config.par.get()) {
+	    for(Gob g : gobs) {
+		synchronized(g) {
+		    g.ctick(dt);
+		}
 	    }
-	};
-	if(!Config.par.get())
-	    copy.forEach(task);
-	else
-	    copy.parallelStream().forEach(task);
+	} else {
+	    Arrays.stream(gobs).parallel().forEach(g -> {
+		    synchronized(g) {
+			g.ctick(dt);
+		    }
+		});
+	}
 	paths.tick(dt);
 	if(glob.sess.ui != null && glob.sess.ui.gui != null && glob.sess.ui.gui.mapfile != null) {
 	    glob.sess.ui.gui.mapfile.updateGobMarkers();
@@ -197,21 +219,17 @@ public class OCache implements Iterable<Gob> {
     }
 
     public void gtick(Render g) {
-	ArrayList<Gob> copy = new ArrayList<Gob>();
-	synchronized(this) {
-	    for(Gob ob : this)
-		copy.add(ob);
-	}
+	Gob[] gobs = ticklist();
 	if(!Config.par.get()) {
-	    copy.forEach(ob -> {
-		    synchronized(ob) {
-			ob.gtick(g);
-		    }
-		});
+	    for(Gob ob : gobs) {
+		synchronized(ob) {
+		    ob.gtick(g);
+		}
+	    }
 	} else {
 	    Collection<Render> subs = new ArrayList<>();
 	    ThreadLocal<Render> subv = new ThreadLocal<>();
-	    copy.parallelStream().forEach(ob -> {
+	    Arrays.stream(gobs).parallel().forEach(ob -> {
 		    Render sub = subv.get();
 		    if(sub == null) {
 			sub = g.env().render();
@@ -242,6 +260,7 @@ public class OCache implements Iterable<Gob> {
 	synchronized(this) {
 	    cbs = new ArrayList<>(this.cbs);
 	    local.add(gob);
+	    seq++;
 	}
 	for(Gob g : gob) {
 	    synchronized(g) {
@@ -256,6 +275,7 @@ public class OCache implements Iterable<Gob> {
 	synchronized(this) {
 	    cbs = new ArrayList<>(this.cbs);
 	    local.remove(gob);
+	    seq++;
 	}
 	for(Gob g : gob) {
 	    synchronized(g) {
@@ -446,6 +466,7 @@ public class OCache implements Iterable<Gob> {
 	public boolean nremoved, added, gremoved, virtual;
 	public Gob gob;
 	public Loader.Future<?> applier;
+	private AttrDelta applying;
 
 	public GobInfo(long id, int frame) {
 	    this.id = id;
@@ -474,13 +495,29 @@ public class OCache implements Iterable<Gob> {
 		    synchronized(this) {
 			if((d = pending.peek()) == null)
 			    break;
+			applying = d;
 		    }
-		    synchronized(gob) {
-			deltas.get(d.type).apply(gob, d.clone());
-		    }
-		    synchronized(this) {
-			if((pending.poll()) != d)
-			    throw(new RuntimeException());
+		    double st = Utils.rtime();
+		    boolean done = false;
+		    try {
+			synchronized(gob) {
+			    /* Rewind rather than clone, in case a
+			     * previous attempt was interrupted by
+			     * Loading. */
+			    d.rewind();
+			    deltas.get(d.type).apply(gob, d);
+			}
+			done = true;
+		    } finally {
+			stats.applied(Utils.rtime() - st);
+			/* Dequeued along with clearing applying, lest
+			 * queue() take it for a coalescable successor
+			 * in between. */
+			synchronized(this) {
+			    applying = null;
+			    if(done && (pending.poll() != d))
+				throw(new RuntimeException());
+			}
 		    }
 		}
 		if(!added) {
@@ -506,6 +543,81 @@ public class OCache implements Iterable<Gob> {
 		}
 	    }
 	}
+
+	/* Only the last of several consecutive updates of these
+	 * types has any lasting effect, so a still-pending
+	 * predecessor can simply be replaced. */
+	private void queue(AttrDelta d) {
+	    if(coalesced(d.type)) {
+		AttrDelta last = pending.peekLast();
+		if((last != null) && (last != applying) && (last.type == d.type)) {
+		    pending.pollLast();
+		    stats.ncoal++;
+		}
+	    }
+	    pending.add(d);
+	}
+    }
+
+    private static boolean coalesced(int type) {
+	switch(type) {
+	case OD_MOVE: case OD_ZOFF: case OD_LUMIN: case OD_HEALTH:
+	    return(true);
+	default:
+	    return(false);
+	}
+    }
+
+    public static class Stats {
+	public double rate, crate, frametime;
+	private int ndelta, ncoal, pdelta, pcoal;
+	private double applytime, last;
+
+	private synchronized void applied(double t) {
+	    applytime += t;
+	}
+
+	private synchronized void tick(double now, double dt) {
+	    if(dt > 0)
+		frametime = (frametime * 0.9) + (applytime * 0.1);
+	    applytime = 0;
+	    if(now - last >= 1) {
+		rate = (ndelta - pdelta) / (now - last);
+		crate = (ncoal - pcoal) / (now - last);
+		pdelta = ndelta;
+		pcoal = ncoal;
+		last = now;
+	    }
+	}
+
+	public String toString() {
+	    return(String.format("%.0f/s (%.0f/s coalesced), apply %.2f ms/f", rate, crate, frametime * 1000));
+	}
+    }
+
+    public final Stats stats = new Stats();
+    private final Collection<GobInfo> dirty = new LinkedHashSet<>();
+
+    /* Network deltas are only queued on reception and handed to
+     * the loader once per tick, so that deltas to the same object
+     * arriving within a tick are coalesced and applied
+     * together. */
+    private void applydirty() {
+	GobInfo[] batch;
+	synchronized(dirty) {
+	    if(dirty.isEmpty())
+		return;
+	    batch = dirty.toArray(new GobInfo[0]);
+	    dirty.clear();
+	}
+	for(GobInfo ng : batch)
+	    ng.checkdirty(false);
+    }
+
+    public String stats() {
+	synchronized(netinfo) {
+	    return(String.format("%d, deltas %s", netinfo.size(), stats));
+	}
     }
 
     private final Map<Long, GobInfo> netinfo = new HashMap<>();
@@ -567,6 +679,21 @@ public class OCache implements Iterable<Gob> {
 	    this.old = ((od.fl & 4) != 0);
 	}
 
+	private AttrDelta(ObjDelta od, int type, byte[] blob, int off, int len) {
+	    super(type, blob, off, len);
+	    this.old = ((od.fl & 4) != 0);
+	}
+
+	/* Shares the backing array of the containing message
+	 * rather than copying each attribute out of it. */
+	public static AttrDelta slice(ObjDelta od, int type, MessageBuf blob, int len) {
+	    if(blob.rem() < len)
+		throw(new Message.EOF("Required " + len + " bytes, got only " + blob.rem()).msg(blob));
+	    AttrDelta ret = new AttrDelta(od, type, blob.rbuf, blob.rh, len);
+	    blob.rh += len;
+	    return(ret);
+	}
+
 	public AttrDelta(AttrDelta from) {
 	    super(from);
 	    this.old = from.old;
@@ -588,8 +715,15 @@ public class OCache implements Iterable<Gob> {
 		synchronized(ng) {
 		    ng.frame = delta.frame;
 		    ng.virtual = ((delta.fl & 2) != 0);
-		    ng.pending.addAll(delta.attrs);
-		    ng.checkdirty(false);
+		    synchronized(stats) {
+			for(AttrDelta d : delta.attrs) {
+			    ng.queue(d);
+			    stats.ndelta++;
+			}
+		    }
+		}
+		synchronized(dirty) {
+		    dirty.add(ng);
 		}
 	    }
 	    return(ng);
@@ -27,6 +27,7 @@
 package haven;
 
 import java.util.*;
+import haven.render.FrameStats;
 
 public class Profwnd extends WindowX {
     public Profwnd(Profile prof, String title) {
@@ -35,6 +36,13 @@ public class Profwnd extends WindowX {
 	pack();
     }
 
+    public Profwnd(FrameStats stats, String title) {
+	super(Coord.z, title);
+	Statdisp disp = add(new Statdisp(stats), Coord.z);
+	add(new Button(UI.scale(100), "Export CSV", disp::save), disp.pos("bl").adds(0, 5));
+	pack();
+    }
+
     public void wdgmsg(Widget sender, String msg, Object... args) {
 	if(msg.equals("close")) {
 	    ui.destroy(this);
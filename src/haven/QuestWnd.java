@@ -127,6 +127,7 @@ public class QuestWnd extends Widget {
 			}
 			if((a += (dt * 0.2)) > 1.0)
 			    destroy();
+			damage();
 		    }
 
 		    public void presize() {
@@ -371,10 +372,12 @@ public class QuestWnd extends Widget {
 		    try {
 			rtitle = qtfnd.render(info.title()).tex();
 			resize();
+			damage();
 		    } catch(Loading l) {
 		    }
 		}
 		if(glowt >= 0) {
+		    damage();
 		    if((glowt += (dt * 0.5)) > 1.0) {
 			glowt = -1;
 			glow = glowon = null;
@@ -551,6 +554,7 @@ public class QuestWnd extends Widget {
 	    if(loading) {
 		loading = false;
 		Collections.sort(quests, comp);
+		damage();
 	    }
 	    super.tick(dt);
 	}
@@ -0,0 +1,155 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import static haven.Connection.Capture.*;
+
+/* Feeds a capture recorded by Connection.Capture back to the
+ * connection callbacks, without any server. Everything sent to
+ * the server is simply discarded. */
+public class ReplayConnection extends Connection {
+    public static final Config.Variable<Path> replay = Config.Variable.propp("haven.replay", "");
+    public static final Config.Variable<Boolean> fast = Config.Variable.propb("haven.replay-fast", false);
+    public final Path path;
+    public final boolean paced;
+    private Thread worker;
+    private boolean alive = true;
+    public int nrel, nobj, nmap;
+
+    public ReplayConnection(Path path, boolean paced) {
+	super("replay");
+	this.path = path;
+	this.paced = paced;
+    }
+
+    private void dispatch(StreamMessage msg) throws InterruptedException {
+	double start = Utils.rtime();
+	while(!msg.eom()) {
+	    int kind = msg.uint8();
+	    double t = msg.uint32() / 1000.0;
+	    if(paced) {
+		double now = Utils.rtime();
+		if(now - start < t)
+		    Thread.sleep((long)((t - (now - start)) * 1000));
+	    }
+	    Utils.checkirq();
+	    switch(kind) {
+	    case CAP_REL: {
+		int type = msg.uint8();
+		PMessage rmsg = new PMessage(type, msg.bytes(msg.int32()));
+		for(Callback cb : cbs)
+		    cb.handle(rmsg);
+		nrel++;
+		break;
+	    }
+	    case CAP_OBJ: {
+		int fl = msg.uint8();
+		long id = msg.uint32();
+		int fr = msg.int32();
+		OCache.ObjDelta delta = new OCache.ObjDelta(fl, id, fr);
+		delta.initframe = msg.int32();
+		delta.rem = msg.uint8() != 0;
+		while(true) {
+		    int type = msg.uint8();
+		    if(type == OCache.OD_END)
+			break;
+		    delta.attrs.add(new OCache.AttrDelta(delta, type, msg, msg.int32()));
+		}
+		for(Callback cb : cbs)
+		    cb.handle(delta);
+		nobj++;
+		break;
+	    }
+	    case CAP_MAP: {
+		Message mmsg = new MessageBuf(msg.bytes(msg.int32()));
+		for(Callback cb : cbs)
+		    cb.mapdata(mmsg);
+		nmap++;
+		break;
+	    }
+	    case CAP_CLOSE:
+		return;
+	    default:
+		throw(new Message.FormatError("Unknown capture record type: " + kind));
+	    }
+	}
+    }
+
+    private void run() {
+	double start = Utils.rtime();
+	try(StreamMessage msg = new StreamMessage(new BufferedInputStream(Files.newInputStream(path)))) {
+	    if(!msg.string().equals(MAGIC))
+		throw(new Message.FormatError("Not a packet capture: " + path));
+	    dispatch(msg);
+	} catch(InterruptedException e) {
+	} catch(IOException e) {
+	    new Warning(e, "could not read packet capture").issue();
+	} finally {
+	    double t = Utils.rtime() - start;
+	    int n = nrel + nobj + nmap;
+	    Debug.log.printf("replay: %d messages (%d rel, %d obj, %d map) in %.2f s, %.1f msg/s\n",
+			     n, nrel, nobj, nmap, t, n / t);
+	    alive = false;
+	    for(Callback cb : cbs)
+		cb.closed();
+	}
+    }
+
+    public void connect(byte[] cookie, Object... args) {
+	synchronized(this) {
+	    if(worker != null)
+		throw(new IllegalStateException());
+	    worker = new HackThread(this::run, "Replay worker");
+	    worker.setDaemon(true);
+	    worker.start();
+	}
+    }
+
+    public boolean alive() {
+	return(alive && (worker != null));
+    }
+
+    public void close() {
+	if(worker == null)
+	    throw(new IllegalStateException());
+	worker.interrupt();
+    }
+
+    public void send(ByteBuffer msg) {}
+    public void queuemsg(PMessage pmsg) {}
+
+    public static Session session(Path path) {
+	try {
+	    return(new Session(new ReplayConnection(path, !fast.get()), "replay", new byte[0]));
+	} catch(InterruptedException e) {
+	    throw(new RuntimeException(e));
+	}
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+package haven;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.io.*;
+import java.nio.file.*;
+
+/* Records the first use of every remote resource in a session,
+ * along with when and in which screen it happened. The last few
+ * traces are kept in the resource cache, and are used at startup to
+ * prefetch what is likely to be needed soon. The main function
+ * turns any number of traces into res-preload/res-bgload lists. */
+public class ResTrace {
+    public static final Config.Variable<Path> tracefile = Config.Variable.propp("haven.restrace", "");
+    public static final Config.Variable<Boolean> prefetch = Config.Variable.propb("haven.resprefetch", true);
+    /* Resources used before entering the game, or this soon
+     * after, go in the preload list. */
+    public static final double PRELOADWIN = 20.0;
+    public static final int MAXENTRIES = 20000, KEEP = 4;
+    private static final double start = Utils.rtime();
+    private static final Map<String, Entry> seen = new ConcurrentHashMap<>();
+    private static volatile String context = "startup";
+    private static volatile double ctxstart = start;
+
+    public static class Entry {
+	public final String name, ctx;
+	public final int ver;
+	public final double time, ctxtime;
+
+	public Entry(String name, int ver, double time, String ctx, double ctxtime) {
+	    this.name = name;
+	    this.ver = ver;
+	    this.time = time;
+	    this.ctx = ctx;
+	    this.ctxtime = ctxtime;
+	}
+
+	public String toString() {
+	    return(String.format((Locale)null, "%s:%d %.3f %s %.3f", name, ver, time, ctx, ctxtime));
+	}
+
+	public static Entry parse(String ln) {
+	    String[] w = ln.split(" ");
+	    int p;
+	    if((w.length != 4) || ((p = w[0].lastIndexOf(':')) < 0))
+		return(null);
+	    try {
+		return(new Entry(w[0].substring(0, p), Integer.parseInt(w[0].substring(p + 1)),
+				 Double.parseDouble(w[1]), w[2], Double.parseDouble(w[3])));
+	    } catch(NumberFormatException e) {
+		return(null);
+	    }
+	}
+    }
+
+    public static void context(String ctx) {
+	if(!ctx.equals(context)) {
+	    ctxstart = Utils.rtime();
+	    context = ctx;
+	}
+    }
+
+    public static void mark(String event) {
+	double now = Utils.rtime();
+	Debug.log.printf("restrace: %s after %.2f s in %s (%.2f s since start)\n", event, now - ctxstart, context, now - start);
+    }
+
+    public static void access(String name, int ver) {
+	if(seen.containsKey(name) || (seen.size() >= MAXENTRIES))
+	    return;
+	double now = Utils.rtime();
+	seen.putIfAbsent(name, new Entry(name, ver, now - start, context, now - ctxstart));
+    }
+
+    public static List<Entry> trace() {
+	List<Entry> ret = new ArrayList<>(seen.values());
+	ret.sort(Comparator.comparingDouble(e -> e.time));
+	return(ret);
+    }
+
+    public static void write(Writer out, Collection<Entry> trace) throws IOException {
+	for(Entry e : trace)
+	    out.write(e.toString() + "\n");
+    }
+
+    public static List<Entry> read(Reader in) throws IOException {
+	BufferedReader lines = new BufferedReader(in);
+	List<Entry> ret = new ArrayList<>();
+	String ln;
+	while((ln = lines.readLine()) != null) {
+	    Entry e = Entry.parse(ln);
+	    if(e != null)
+		ret.add(e);
+	}
+	return(ret);
+    }
+
+    /* Keeps the current trace in the cache, replacing the oldest
+     * of the ones kept. */
+    public static void save(ResCache cache) {
+	List<Entry> trace = trace();
+	if(trace.isEmpty())
+	    return;
+	if(cache != null) {
+	    try {
+		int slot = 0;
+		long oldest = Long.MAX_VALUE;
+		for(int i = 0; i < KEEP; i++) {
+		    long t;
+		    try(DataInputStream in = new DataInputStream(cache.fetch("tmp/restrace-" + i))) {
+			t = in.readLong();
+		    } catch(IOException e) {
+			t = Long.MIN_VALUE;
+		    }
+		    if(t < oldest) {
+			oldest = t;
+			slot = i;
+		    }
+		}
+		try(OutputStream fp = cache.store("tmp/restrace-" + slot)) {
+		    new DataOutputStream(fp).writeLong(System.currentTimeMillis());
+		    Writer w = new OutputStreamWriter(fp, Utils.utf8);
+		    write(w, trace);
+		    w.flush();
+		}
+	    } catch(IOException e) {
+		new Warning(e, "could not save resource trace").issue();
+	    }
+	}
+	if(tracefile.get() != null) {
+	    try(Writer w = Files.newBufferedWriter(tracefile.get(), Utils.utf8)) {
+		write(w, trace);
+	    } catch(IOException e) {
+		new Warning(e, "could not write resource trace").issue();
+	    }
+	}
+    }
+
+    public static List<List<Entry>> saved(ResCache cache) {
+	List<List<Entry>> ret = new ArrayList<>();
+	for(int i = 0; i < KEEP; i++) {
+	    try(InputStream fp = cache.fetch("tmp/restrace-" + i)) {
+		new DataInputStream(fp).readLong();
+		ret.add(read(new InputStreamReader(fp, Utils.utf8)));
+	    } catch(IOException e) {
+	    }
+	}
+	return(ret);
+    }
+
+    private static class Usage {
+	final String name;
+	int ver = -1, n;
+	boolean early;
+	List<Double> times = new ArrayList<>();
+
+	Usage(String name) {this.name = name;}
+
+	double median() {
+	    Collections.sort(times);
+	    return(times.get(times.size() / 2));
+	}
+    }
+
+    private static boolean early(Entry e) {
+	return(!e.ctx.equals("game") || (e.ctxtime < PRELOADWIN));
+    }
+
+    /* Returns the preload and bgload lists, as name:version
+     * lines. Preloads are whatever at least half of the traces used
+     * early, in order of first use; bgloads are whatever else more
+     * than one trace used (or everything, given only one trace), the
+     * most commonly used first. */
+    public static Pair<List<String>, List<String>> rank(Collection<List<Entry>> traces) {
+	Map<String, Usage> use = new HashMap<>();
+	for(List<Entry> trace : traces) {
+	    for(Entry e : trace) {
+		Usage u = use.computeIfAbsent(e.name, Usage::new);
+		u.ver = Math.max(u.ver, e.ver);
+		u.n++;
+		u.times.add(e.time);
+		if(early(e))
+		    u.early = true;
+	    }
+	}
+	int nt = traces.size();
+	List<Usage> pre = new ArrayList<>(), bg = new ArrayList<>();
+	for(Usage u : use.values()) {
+	    if(u.early && (u.n * 2 >= nt))
+		pre.add(u);
+	    else if((u.n > 1) || (nt == 1))
+		bg.add(u);
+	}
+	pre.sort(Comparator.comparingDouble(Usage::median));
+	bg.sort((a, b) -> (a.n != b.n) ? (b.n - a.n) : Double.compare(a.median(), b.median()));
+	List<String> rpre = new ArrayList<>(), rbg = new ArrayList<>();
+	for(Usage u : pre)
+	    rpre.add(u.name + ":" + u.ver);
+	for(Usage u : bg)
+	    rbg.add(u.name + ":" + u.ver);
+	return(new Pair<>(rpre, rbg));
+    }
+
+    /* Queues what previous sessions have used, at below the
+     * priorities of the shipped lists. */
+    public static void prefetch(Resource.Pool pool, ResCache cache) {
+	if((cache == null) || !prefetch.get())
+	    return;
+	List<List<Entry>> traces = saved(cache);
+	if(traces.isEmpty())
+	    return;
+	Pair<List<String>, List<String>> lists = rank(traces);
+	load(pool, lists.a, -15);
+	load(pool, lists.b, -20);
+    }
+
+    private static void load(Resource.Pool pool, List<String> list, int prio) {
+	for(String ln : list) {
+	    int p = ln.lastIndexOf(':');
+	    try {
+		pool.prefetch(ln.substring(0, p), Integer.parseInt(ln.substring(p + 1)), prio);
+	    } catch(RuntimeException e) {
+	    }
+	}
+    }
+
+    private static void writelist(Path path, List<String> list) throws IOException {
+	try(Writer w = Files.newBufferedWriter(path, Utils.ascii)) {
+	    for(String ln : list)
+		w.write(ln + "\n");
+	}
+    }
+
+    public static void main(String[] args) throws IOException {
+	if(args.length < 3) {
+	    System.err.println("usage: ResTrace PRELOAD-OUT BGLOAD-OUT TRACE...");
+	    System.exit(1);
+	}
+	List<List<Entry>> traces = new ArrayList<>();
+	for(int i = 2; i < args.length; i++) {
+	    try(Reader in = Files.newBufferedReader(Utils.path(args[i]), Utils.utf8)) {
+		traces.add(read(in));
+	    }
+	}
+	Pair<List<String>, List<String>> lists = rank(traces);
+	writelist(Utils.path(args[0]), lists.a);
+	writelist(Utils.path(args[1]), lists.b);
+	System.err.printf("%d traces: %d preloads, %d bgloads\n", traces.size(), lists.a.size(), lists.b.size());
+    }
+}
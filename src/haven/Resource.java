@@ -42,6 +42,9 @@ import javax.imageio.*;
 import java.awt.image.BufferedImage;
 
 public class Resource implements Serializable {
+    /* Bumped whenever any resource has been decoded, for whatever
+     * draws placeholders until its resources are loaded. */
+    public static volatile int loadseq = 0;
     public static final Config.Variable<URI> resurl = Config.Variable.propu("haven.resurl", "");
     public static final Config.Variable<Path> resdir = Config.Variable.propp("haven.resdir", System.getenv("HAFEN_RESDIR"));
     private static ResCache prscache;
@@ -61,7 +64,11 @@ public class Resource implements Serializable {
     public int ver;
     public ResSource source;
     public final transient Pool pool;
-    protected Collection<Layer> layers = new LinkedList<Layer>();
+    private volatile Layer[] layers = {};
+    /* Per-class views of the layers, and of ID layers by their
+     * IDs, built as they are first asked for. */
+    private transient volatile Map<Class<?>, Object[]> byclass = null;
+    private transient volatile Map<Class<?>, Map<Object, Object>> byid = null;
     private boolean used = false;
 
     public abstract static class Named implements Indir<Resource>, Serializable {
@@ -262,7 +269,7 @@ public class Resource implements Serializable {
 	}
 
 	public void add(Layer layer) {
-	    layers.add(layer);
+	    addlayer(layer);
 	}
     }
 	
@@ -411,12 +418,66 @@ public class Resource implements Serializable {
 **/
     
     public static class HttpSource implements ResSource, Serializable {
+	/* At most this many requests are in flight at once, over
+	 * HttpURLConnection's kept-alive connections, and concurrent
+	 * requests for the same URL share a single download. */
+	public static final Config.Variable<Integer> window = Config.Variable.propi("haven.reswindow", 8);
+	private static final Map<URI, Fetch> inflight = new HashMap<>();
+	private static java.util.concurrent.Semaphore slots = null;
 	public URI base;
 
 	public HttpSource(URI base) {
 	    this.base = base;
 	}
 
+	private static java.util.concurrent.Semaphore slots() {
+	    synchronized(inflight) {
+		if(slots == null) {
+		    int n = Math.max(window.get(), 1);
+		    /* Keep enough idle connections around to be reused
+		     * by the whole window. */
+		    if(System.getProperty("http.maxConnections") == null)
+			System.setProperty("http.maxConnections", Integer.toString(n));
+		    slots = new java.util.concurrent.Semaphore(n, true);
+		}
+		return(slots);
+	    }
+	}
+
+	private static class Fetch {
+	    private byte[] data;
+	    private IOException error;
+	    private boolean done = false;
+
+	    synchronized void finish(byte[] data, IOException error) {
+		this.data = data;
+		this.error = error;
+		this.done = true;
+		notifyAll();
+	    }
+
+	    synchronized byte[] await() throws IOException {
+		boolean intd = false;
+		try {
+		    while(!done) {
+			try {
+			    wait();
+			} catch(InterruptedException e) {
+			    intd = true;
+			}
+		    }
+		} finally {
+		    if(intd)
+			Thread.currentThread().interrupt();
+		}
+		if(error instanceof FileNotFoundException)
+		    throw(new FileNotFoundException(error.getMessage()));
+		if(error != null)
+		    throw(new IOException(error));
+		return(data);
+	    }
+	}
+
 	private URI encodeuri(URI raw) throws IOException {
 	    /* This is kinda crazy, but it is, actually, how the Java
 	     * documentation recommends that it be done... */
@@ -427,13 +488,53 @@ public class Resource implements Serializable {
 	    }
 	}
 
-	public InputStream get(String name) throws IOException {
-	    return(Http.fetch(encodeuri(base.resolve(name + ".res")).toURL(), c -> {
+	private static byte[] download(URI uri) throws IOException {
+	    java.util.concurrent.Semaphore slots = slots();
+	    try {
+		slots.acquire();
+	    } catch(InterruptedException e) {
+		throw(new InterruptedIOException());
+	    }
+	    try(InputStream in = Http.fetch(uri.toURL(), c -> {
 			/* Apparently, some versions of Java Web Start has
 			 * a bug in its internal cache where it refuses to
 			 * reload a URL even when it has changed. */
 			c.setUseCaches(false);
-		    }));
+		    })) {
+		/* Reading it to the end lets the connection be reused. */
+		return(Utils.readall(in));
+	    } finally {
+		slots.release();
+	    }
+	}
+
+	public InputStream get(String name) throws IOException {
+	    URI uri = encodeuri(base.resolve(name + ".res"));
+	    Fetch f;
+	    boolean mine = false;
+	    synchronized(inflight) {
+		if((f = inflight.get(uri)) == null) {
+		    inflight.put(uri, f = new Fetch());
+		    mine = true;
+		}
+	    }
+	    if(mine) {
+		byte[] data = null;
+		IOException error = null;
+		try {
+		    data = download(uri);
+		} catch(IOException e) {
+		    error = e;
+		} catch(RuntimeException e) {
+		    error = new IOException(e);
+		} finally {
+		    synchronized(inflight) {
+			inflight.remove(uri);
+		    }
+		    f.finish(data, (error == null && data == null) ? new IOException("download aborted") : error);
+		}
+	    }
+	    return(new ByteArrayInputStream(f.await()));
 	}
 
 	public String toString() {
@@ -528,13 +629,23 @@ public class Resource implements Serializable {
     }
 
     public static class Pool {
+	/* Loading happens in two stages: loaders fetch the raw data
+	 * from the sources, and decoders parse it into layers. Each
+	 * stage has its own threads, so that a slow fetch doesn't hold
+	 * up decoding or vice versa. */
 	public int nloaders = 2;
+	public int ndecoders = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
 	private final Collection<Loader> loaders = new LinkedList<Loader>();
-	private final List<ResSource> sources = new LinkedList<ResSource>();
+	private final Collection<Decoder> decoders = new LinkedList<Decoder>();
+	private final List<ResSource> sources = new java.util.concurrent.CopyOnWriteArrayList<ResSource>();
 	private final Map<String, Resource> cache = new CacheMap<String, Resource>();
 	private final PrioQueue<Queued> queue = new PrioQueue<Queued>();
+	private final PrioQueue<Fetched> decqueue = new PrioQueue<Fetched>();
+	private double fetchtime = 0, dectime = 0;
+	private int nfetched = 0, ndecoded = 0;
 	private final Map<String, Queued> queued = new HashMap<String, Queued>();
 	private final Pool parent;
+	boolean traced = false;
 
 	public Pool(Pool parent, ResSource... sources) {
 	    this.parent = parent;
@@ -559,6 +670,7 @@ public class Resource implements Serializable {
 	    Resource res;
 	    LoadException error;
 	    boolean found = false;
+	    int nextsrc = 0;
 
 	    Queued(String name, int ver, int prio) {
 		super(name, ver);
@@ -626,44 +738,108 @@ public class Resource implements Serializable {
 	    }
 	}
 
-	private void handle(Queued res) {
-	    for(ResSource src : sources) {
+	private class Fetched implements Prioritized {
+	    final Queued res;
+	    final ResSource src;
+	    final byte[] data;
+
+	    Fetched(Queued res, ResSource src, byte[] data) {
+		this.res = res;
+		this.src = src;
+		this.data = data;
+	    }
+
+	    public int priority() {
+		return(res.prio);
+	    }
+	}
+
+	private void failed(Queued res, ResSource src, Throwable t) {
+	    if(!(t instanceof FileNotFoundException))
+		res.found = true;
+	    LoadException error;
+	    if(t instanceof LoadException)
+		error = (LoadException)t;
+	    else
+		error = new LoadException(String.format("Load error in resource %s(v%d), from %s", res.name, res.ver, src), t, null);
+	    error.src = src;
+	    if(res.error != null) {
+		error.prev = res.error;
+		error.addSuppressed(res.error);
+	    }
+	    res.error = error;
+	}
+
+	private void fetch(Queued res) {
+	    while(res.nextsrc < sources.size()) {
+		ResSource src = sources.get(res.nextsrc++);
+		double start = Utils.rtime();
+		byte[] data;
 		try(InputStream in = src.get(res.name)) {
-		    Message msg = new StreamMessage(in);
-		    if(msg.eom()) {
+		    data = Utils.readall(in);
+		    if(data.length == 0) {
 			/* XXX? This should not be necessary, but for some reason
 			 * it seems that custom client resources find their way to
 			 * create empty cache files by the same name. I don't know
 			 * how. */
 			throw(new FileNotFoundException("empty file"));
 		    }
-		    res.found = true;
-		    Resource ret = new Resource(this, res.name, res.ver);
-		    ret.source = src;
-		    ret.load(msg);
-		    res.res = ret;
-		    res.error = null;
-		    break;
 		} catch(Throwable t) {
-		    if(!(t instanceof FileNotFoundException))
-			res.found = true;
-		    LoadException error;
-		    if(t instanceof LoadException)
-			error = (LoadException)t;
-		    else
-			error = new LoadException(String.format("Load error in resource %s(v%d), from %s", res.name, res.ver, src), t, null);
-		    error.src = src;
-		    if(res.error != null) {
-			error.prev = res.error;
-			error.addSuppressed(res.error);
-		    }
-		    res.error = error;
+		    failed(res, src, t);
+		    continue;
+		}
+		res.found = true;
+		synchronized(decqueue) {
+		    fetchtime += Utils.rtime() - start;
+		    nfetched++;
+		    decqueue.add(new Fetched(res, src, data));
+		    decqueue.notify();
 		}
+		ckdec();
+		return;
 	    }
 	    res.done();
 	}
 
+	private void decode(Fetched f) {
+	    Queued res = f.res;
+	    double start = Utils.rtime();
+	    try {
+		Resource ret = new Resource(this, res.name, res.ver);
+		ret.source = f.src;
+		ret.load(new MessageBuf(f.data));
+		res.res = ret;
+		res.error = null;
+	    } catch(Throwable t) {
+		failed(res, f.src, t);
+	    }
+	    synchronized(decqueue) {
+		dectime += Utils.rtime() - start;
+		ndecoded++;
+		loadseq++;
+	    }
+	    if((res.res == null) && (res.nextsrc < sources.size())) {
+		/* Try the remaining sources, as if it had never been
+		 * found in this one. */
+		synchronized(queue) {
+		    queue.add(res);
+		    queue.notify();
+		}
+		ckld();
+	    } else {
+		res.done();
+	    }
+	}
+
 	public Named load(String name, int ver, int prio) {
+	    if(traced)
+		ResTrace.access(name, ver);
+	    return(prefetch(name, ver, prio));
+	}
+
+	/* Like load, but not recorded in the access trace, for loads
+	 * made ahead of anything actually asking for the resource. */
+	public Named prefetch(String name, int ver, int prio) {
 	    Queued ret;
 	    synchronized(cache) {
 		Resource cur = cache.get(name);
@@ -759,6 +935,29 @@ public class Resource implements Serializable {
 	    }
 	}
 
+	private void ckdec() {
+	    int qsz;
+	    synchronized(decqueue) {
+		qsz = decqueue.size();
+	    }
+	    synchronized(decoders) {
+		while(decoders.size() < Math.min(ndecoders, qsz)) {
+		    final Decoder n = new Decoder();
+		    Thread th = new HackThread(loadergroup, n, "Haven resource decoder");
+		    th.setDaemon(true);
+		    th.start();
+		    while(!n.added) {
+			try {
+			    decoders.wait();
+			} catch(InterruptedException e) {
+			    Thread.currentThread().interrupt();
+			    return;
+			}
+		    }
+		}
+	    }
+	}
+
 	public class Loader implements Runnable {
 	    private boolean added = false;
 
@@ -781,7 +980,7 @@ public class Resource implements Serializable {
 				    return;
 			    }
 			}
-			handle(cur);
+			fetch(cur);
 			cur = null;
 		    }
 		} catch(InterruptedException e) {
@@ -796,14 +995,73 @@ public class Resource implements Serializable {
 	    }
 	}
 
+	public class Decoder implements Runnable {
+	    private boolean added = false;
+
+	    public void run() {
+		synchronized(decoders) {
+		    decoders.add(this);
+		    added = true;
+		    decoders.notifyAll();
+		}
+		boolean intd = false;
+		try {
+		    while(true) {
+			Fetched cur;
+			synchronized(decqueue) {
+			    long start = System.currentTimeMillis(), now = start;
+			    while((cur = decqueue.poll()) == null) {
+				decqueue.wait(10000 - (now - start));
+				now = System.currentTimeMillis();
+				if(now - start >= 10000)
+				    return;
+			    }
+			}
+			decode(cur);
+			cur = null;
+		    }
+		} catch(InterruptedException e) {
+		    intd = true;
+		} finally {
+		    synchronized(decoders) {
+			decoders.remove(this);
+		    }
+		    if(!intd)
+			ckdec();
+		}
+	    }
+	}
+
 	public int qdepth() {
 	    int ret = (parent == null)?0:parent.qdepth();
 	    synchronized(queue) {
 		ret += queue.size();
 	    }
+	    synchronized(decqueue) {
+		ret += decqueue.size();
+	    }
 	    return(ret);
 	}
 
+	public String stats() {
+	    int nl, nd;
+	    synchronized(loaders) {
+		nl = loaders.size();
+	    }
+	    synchronized(decoders) {
+		nd = decoders.size();
+	    }
+	    int fq, dq;
+	    synchronized(queue) {
+		fq = queue.size();
+	    }
+	    synchronized(decqueue) {
+		dq = decqueue.size();
+		return(String.format("F %d/%d %.1f ms, D %d/%d %.1f ms", fq, nl, (nfetched > 0) ? (fetchtime * 1000 / nfetched) : 0.0,
+				     dq, nd, (ndecoded > 0) ? (dectime * 1000 / ndecoded) : 0.0));
+	    }
+	}
+
 	public int numloaded() {
 	    int ret = (parent == null)?0:parent.numloaded();
 	    synchronized(cache) {
@@ -898,6 +1156,7 @@ public class Resource implements Serializable {
 		    Pool remote = new Pool(local()/*, new CustomizedJarSource("customized-remote")*/);
 		    if(prscache != null)
 			remote.add(new CacheSource(prscache));
+		    remote.traced = true;
 		    _remote = remote;;
 		}
 	    }
@@ -919,6 +1178,7 @@ public class Resource implements Serializable {
 	    src = new Caching(src, prscache);
 	}
 	remote().add(src);
+	remote().nloaders = Math.max(remote().nloaders, HttpSource.window.get());
     }
 
     public static class LoadException extends RuntimeException {
@@ -1056,10 +1316,34 @@ public class Resource implements Serializable {
 	return(ret);
     }
 
+    /* UI-scaled images are only made when asked for, and are only
+     * softly held by their layers. The most recently made ones,
+     * up to a total size, are kept strongly reachable here. */
+    private static final long SCALEDKEEP = 64L << 20;
+    private static final Map<Image, BufferedImage> recentscaled = new LinkedHashMap<>();
+    private static long recentsz = 0;
+
+    private static long imgbytes(BufferedImage img) {
+	return((long)img.getWidth() * img.getHeight() * 4);
+    }
+
+    private static void keepscaled(Image layer, BufferedImage img) {
+	synchronized(recentscaled) {
+	    BufferedImage prev = recentscaled.put(layer, img);
+	    if(prev != null)
+		recentsz -= imgbytes(prev);
+	    recentsz += imgbytes(img);
+	    for(Iterator<BufferedImage> i = recentscaled.values().iterator(); (recentsz > SCALEDKEEP) && i.hasNext();) {
+		recentsz -= imgbytes(i.next());
+		i.remove();
+	    }
+	}
+    }
+
     @LayerName("image")
     public class Image extends Layer implements IDLayer<Integer> {
 	public transient BufferedImage img;
-	private transient BufferedImage scaled;
+	private transient java.lang.ref.SoftReference<BufferedImage> scaled;
 	private transient Tex tex, rawtex;
 	public final int z, subz;
 	public final boolean nooff;
@@ -1077,7 +1361,6 @@ public class Resource implements Serializable {
 	    id = buf.int16();
 	    o = cdec(buf);
 	    so = UI.scale(o);
-	    boolean hasscale = false;
 	    Map<String, byte[]> kvdata = new HashMap<>();
 	    if((fl & 4) != 0) {
 		while(true) {
@@ -1093,7 +1376,6 @@ public class Resource implements Serializable {
 			tsz = val.coord();
 		    } else if(key.equals("scale")) {
 			scale = val.float32();
-			hasscale = true;
 		    } else {
 			kvdata.put(key, data);
 		    }
@@ -1117,13 +1399,23 @@ public class Resource implements Serializable {
 		 * area. */
 		so = new Coord(Math.min(so.x, stsz.x - ssz.x), Math.min(so.y, stsz.y - ssz.y));
 	    }
-	    scaled = PUtils.uiscale(img, ssz);
-	    if(false && !hasscale)
-		scaled = PUtils.monochromize(PUtils.coercergba(scaled), java.awt.Color.RED);
 	}
 
 	public BufferedImage scaled() {
-	    return(scaled);
+	    java.lang.ref.SoftReference<BufferedImage> ref = scaled;
+	    BufferedImage ret = (ref == null) ? null : ref.get();
+	    if(ret == null) {
+		synchronized(this) {
+		    ref = scaled;
+		    if((ret = (ref == null) ? null : ref.get()) == null) {
+			ret = PUtils.uiscale(img, ssz);
+			scaled = new java.lang.ref.SoftReference<>(ret);
+			if(ret != img)
+			    keepscaled(this, ret);
+		    }
+		}
+	    }
+	    return(ret);
 	}
 
 	public Tex rawtex() {
@@ -1771,7 +2063,7 @@ public class Resource implements Serializable {
 
 	public haven.Audio.CS stream() {
 	    try {
-		return(new haven.Audio.VorbisClip(new ByteArrayInputStream(coded)));
+		return(haven.Audio.pcmcache().stream(this, coded));
 	    } catch(IOException e) {
 		throw(new RuntimeException(e));
 	    }
@@ -1833,13 +2125,65 @@ public class Resource implements Serializable {
 	}
     }
 
+    protected void addlayer(Layer layer) {
+	synchronized(this) {
+	    layers = Utils.extend(layers, layer);
+	    byclass = null;
+	    byid = null;
+	}
+    }
+
+    @SuppressWarnings("unchecked")
+    private <L> L[] clayers(Class<L> cl) {
+	Map<Class<?>, Object[]> byclass = this.byclass;
+	if(byclass == null) {
+	    synchronized(this) {
+		if((byclass = this.byclass) == null)
+		    this.byclass = byclass = new java.util.concurrent.ConcurrentHashMap<>();
+	    }
+	}
+	Object[] ret = byclass.get(cl);
+	if(ret == null) {
+	    Layer[] layers = this.layers;
+	    int n = 0;
+	    for(Layer l : layers) {
+		if(cl.isInstance(l))
+		    n++;
+	    }
+	    ret = (Object[])java.lang.reflect.Array.newInstance(cl, n);
+	    n = 0;
+	    for(Layer l : layers) {
+		if(cl.isInstance(l))
+		    ret[n++] = l;
+	    }
+	    byclass.put(cl, ret);
+	}
+	return((L[])ret);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <I, L extends IDLayer<I>> Map<I, L> idlayers(Class<L> cl) {
+	Map<Class<?>, Map<Object, Object>> byid = this.byid;
+	if(byid == null) {
+	    synchronized(this) {
+		if((byid = this.byid) == null)
+		    this.byid = byid = new java.util.concurrent.ConcurrentHashMap<>();
+	    }
+	}
+	Map<Object, Object> ret = byid.get(cl);
+	if(ret == null) {
+	    L[] ls = clayers(cl);
+	    ret = new HashMap<>(ls.length * 2);
+	    for(L l : ls)
+		ret.putIfAbsent(l.layerid(), l);
+	    byid.put(cl, ret);
+	}
+	return((Map<I, L>)(Map<?, ?>)ret);
+    }
+
     public <L extends Layer> Collection<L> layers(final Class<L> cl) {
 	used = true;
-	return(new DefaultCollection<L>() {
-		public Iterator<L> iterator() {
-		    return(Utils.filter(layers.iterator(), cl));
-		}
-	    });
+	return(Collections.unmodifiableList(Arrays.asList(clayers(cl))));
     }
 
     public static class NoSuchLayerException extends NoSuchElementException {
@@ -1850,11 +2194,8 @@ public class Resource implements Serializable {
 
     public <L extends Layer> L layer(Class<L> cl) {
 	used = true;
-	for(Layer l : layers) {
-	    if(cl.isInstance(l))
-		return(cl.cast(l));
-	}
-	return(null);
+	L[] ls = clayers(cl);
+	return((ls.length > 0) ? ls[0] : null);
     }
     public <L extends Layer> L flayer(Class<L> cl) {
 	L l = layer(cl);
@@ -1864,24 +2205,22 @@ public class Resource implements Serializable {
 
     public <L> Collection<L> layers(Class<L> cl, Predicate<? super L> sel) {
 	used = true;
+	List<L> ls = Arrays.asList(clayers(cl));
 	if(sel == null)
-	    sel = l -> true;
+	    return(Collections.unmodifiableList(ls));
 	Predicate<? super L> dsel = sel;
 	return(new DefaultCollection<L>() {
 		public Iterator<L> iterator() {
-		    return(Utils.filter(Utils.filter(layers.iterator(), cl), dsel));
+		    return(Utils.filter(ls.iterator(), dsel));
 		}
 	    });
     }
 
     public <L> L layer(Class<L> cl, Predicate<? super L> sel) {
 	used = true;
-	for(Layer l : layers) {
-	    if(cl.isInstance(l)) {
-		L lc = cl.cast(l);
-		if((sel == null) || sel.test(lc))
-		    return(lc);
-	    }
+	for(L l : clayers(cl)) {
+	    if((sel == null) || sel.test(l))
+		return(l);
 	}
 	return(null);
     }
@@ -1897,14 +2236,7 @@ public class Resource implements Serializable {
 	    return null;
 	}
 	used = true;
-	for(Layer l : layers) {
-	    if(cl.isInstance(l)) {
-		L ll = cl.cast(l);
-		if(ll.layerid().equals(id))
-		    return(ll);
-	    }
-	}
-	return(null);
+	return(idlayers(cl).get(id));
     }
     public <I, L extends IDLayer<I>> L flayer(Class<L> cl, I id) {
 	L l = layer(cl, id);
@@ -1924,7 +2256,7 @@ public class Resource implements Serializable {
 	if(!Arrays.equals(RESOURCE_SIG, in.bytes(RESOURCE_SIG.length)))
 	    throw(new LoadException("Invalid res signature", this));
 	int ver = in.uint16();
-	List<Layer> layers = new LinkedList<Layer>();
+	List<Layer> layers = new ArrayList<Layer>();
 	if(this.ver == -1)
 	    this.ver = ver;
 	else if(ver != this.ver)
@@ -1942,7 +2274,9 @@ public class Resource implements Serializable {
 		layers.add(l);
 	    buf.skip();
 	}
-	this.layers = layers;
+	this.layers = layers.toArray(new Layer[0]);
+	this.byclass = null;
+	this.byid = null;
 	for(Layer l : layers)
 	    l.init();
 	used = false;
@@ -2002,7 +2336,7 @@ public class Resource implements Serializable {
 		continue;
 	    }
 	    try {
-		pool.load(nm, ver, prio);
+		pool.prefetch(nm, ver, prio);
 	    } catch(RuntimeException e) {
 	    }
 	}
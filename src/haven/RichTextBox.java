@@ -61,6 +61,7 @@ public class RichTextBox extends Widget {
 	this.text = fnd.render(text, sz.x - margin2);
 	sb.max = this.text.sz().y + margin2 - sz.y;
 	sb.val = 0;
+	damage();
     }
     
     public boolean mousewheel(MouseWheelEvent ev) {
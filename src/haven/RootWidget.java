@@ -30,6 +30,7 @@ import me.ender.gob.GobEffects;
 
 import java.util.*;
 import java.awt.Color;
+import haven.render.FrameStats;
 
 public class RootWidget extends ConsoleHost implements UI.Notice.Handler, Widget.CursorQuery.Handler, Console.Directory {
     public static final Text.Foundry msgfoundry = new Text.Foundry(Text.dfont, 14);
@@ -69,6 +70,7 @@ public class RootWidget extends ConsoleHost implements UI.Notice.Handler, Widget
 	    if(UIPanel.profile.get()) {
 		add(new Profwnd(guprof, "UI profile"), UI.scale(100, 100));
 		add(new Profwnd(grprof, "GL profile"), UI.scale(500, 100));
+		add(new Profwnd(FrameStats.global, "Render stats"), UI.scale(900, 100));
 		/* XXXRENDER
 		   GameUI gi = findchild(GameUI.class);
 		   if((gi != null) && (gi.map != null))
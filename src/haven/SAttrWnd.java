@@ -88,6 +88,7 @@ public class SAttrWnd extends Widget {
 		    c = tbuff;
 		ct = attrf.render(Integer.toString(ccv + tbv), c);
 		updcost();
+		damage();
 	    }
 	}
 
@@ -338,11 +338,18 @@ public class Session implements Resource.Resolver {
 	    }
 	};
 
-    public Session(SocketAddress server, String username, byte[] cookie, Object... args) throws InterruptedException {
+    public Session(Connection conn, String username, byte[] cookie, Object... args) throws InterruptedException {
 	this.character = new CharacterInfo(this);
-	this.conn = new Connection(server, username);
+	this.conn = conn;
 	this.username = username;
 	this.glob = new Glob(this);
+	if(Connection.capture.get() != null) {
+	    try {
+		conn.add(new Connection.Capture(Connection.capture.get()));
+	    } catch(IOException e) {
+		new Warning(e, "could not open packet capture").issue();
+	    }
+	}
 	conn.add(conncb);
 	conn.connect(cookie, args);
 	
@@ -350,6 +357,10 @@ public class Session implements Resource.Resolver {
 	Config.setUserName(username);
     }
 
+    public Session(SocketAddress server, String username, byte[] cookie, Object... args) throws InterruptedException {
+	this(new Connection(server, username), username, cookie, args);
+    }
+
     public void close() {
 	conn.close();
 	glob.oc.destroy();
@@ -51,6 +51,7 @@ public class SkelSprite extends Sprite implements Sprite.CUpd, EquipTarget, Spri
     private RenderTree.Node[] parts;
     private Collection<Runnable> tickparts = Collections.emptyList();
     private Collection<Consumer<Render>> gtickparts = Collections.emptyList();
+    private final AnimLOD lod = new AnimLOD(owner);
     
     public static final Factory fact = new Factory() {
 	    public Sprite create(Owner owner, Resource res, Message sdt) {
@@ -297,7 +298,8 @@ public class SkelSprite extends Sprite implements Sprite.CUpd, EquipTarget, Spri
 		    oldpose = null;
 		}
 	    }
-	    rebuild();
+	    if(lod.due(dt) || stat)
+		rebuild();
 	}
 	for(MeshAnim.Animation anim : manims)
 	    anim.tick(dt);
@@ -650,6 +650,7 @@ public class Skeleton {
 	protected boolean speedmod = false;
 	protected double nspeed = 0.0;
 	private boolean back = false;
+	private boolean stale = false;
 	
 	public TrackMod(ModOwner owner, Track[] tracks, FxTrack[] effects, float len, WrapMode mode) {
 	    super(owner);
@@ -772,7 +773,9 @@ public class Skeleton {
 	    float ot = this.time;
 	    this.time = nt;
 	    if(!stat) {
-		aupdate(this.time);
+		/* The tracks are only sampled once the pose is actually
+		 * rebuilt, which need not be every tick. */
+		stale = true;
 		if(!back)
 		    playfx(ot, nt);
 		else
@@ -799,6 +802,15 @@ public class Skeleton {
 		break;
 	    }
 	    aupdate(time);
+	    stale = false;
+	}
+
+	public void apply(Pose p) {
+	    if(stale) {
+		aupdate(time);
+		stale = false;
+	    }
+	    super.apply(p);
 	}
 	
 	public boolean stat() {
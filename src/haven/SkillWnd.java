@@ -230,6 +230,7 @@ public class SkillWnd extends Widget {
 		loading = false;
 		sksort(nsk.items);
 		sksort(csk.items);
+		damage();
 	    }
 	}
     }
@@ -356,6 +357,7 @@ public class SkillWnd extends Widget {
 		loading = false;
 		try {
 		    update();
+		    damage();
 		} catch(Loading l) {
 		    loading = true;
 		}
@@ -428,6 +430,7 @@ public class SkillWnd extends Widget {
 		    }
 		}
 		Collections.sort(seen.items, (a, b) -> a.sortkey.compareTo(b.sortkey));
+		damage();
 	    }
 	}
     }
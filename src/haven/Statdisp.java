@@ -0,0 +1,84 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+
+package haven;
+
+import java.io.*;
+import java.nio.file.*;
+import haven.render.FrameStats;
+
+/* Shows what the renderer did in the last frame, alongside the
+ * per-frame mean over the kept history. */
+public class Statdisp extends Widget {
+    private static final FrameStats.Stat[] stats = FrameStats.Stat.values();
+    private static final int nw = UI.scale(100), cw = UI.scale(80);
+    public final FrameStats src;
+
+    public Statdisp(FrameStats src) {
+	super(Coord.of(nw + (cw * 2), FastText.h * (stats.length + 1)));
+	this.src = src;
+    }
+
+    public void draw(GOut g) {
+	FrameStats.Frame last = src.last();
+	double[] avg = src.average();
+	FastText.aprint(g, Coord.of(nw + cw, 0), 1, 0, "last");
+	FastText.aprint(g, Coord.of(nw + (cw * 2), 0), 1, 0, "mean/max");
+	int y = FastText.h;
+	for(FrameStats.Stat s : stats) {
+	    FastText.print(g, Coord.of(0, y), s.nm);
+	    if(last != null)
+		FastText.aprintf(g, Coord.of(nw + cw, y), 1, 0, "%,d", last.get(s));
+	    FastText.aprintf(g, Coord.of(nw + (cw * 2), y), 1, 0, s.max ? "%,.0f" : "%,.1f", avg[s.ordinal()]);
+	    y += FastText.h;
+	}
+    }
+
+    public Path export() throws IOException {
+	Path path = Debug.somedir(String.format("renderstats-%d.csv", System.currentTimeMillis()));
+	try(Writer out = Files.newBufferedWriter(path, Utils.utf8)) {
+	    src.csv(out);
+	}
+	return(path);
+    }
+
+    public void save() {
+	try {
+	    ui.msg("Wrote " + export());
+	} catch(IOException e) {
+	    ui.error("Could not write render stats: " + e.getMessage());
+	}
+    }
+
+    public boolean keydown(KeyDownEvent ev) {
+	if(ev.c == 'd') {
+	    save();
+	    return(true);
+	}
+	return(super.keydown(ev));
+    }
+}
@@ -83,15 +83,23 @@ public class WItem extends Widget implements DTarget {
 	spr.draw(g);
     }
 
+    private static Tex mktex(BufferedImage img) {
+	if(img == null)
+	    throw(new Loading());
+	return(new TexI(img));
+    }
+
     public class ItemTip implements Indir<Tex>, ItemInfo.InfoTip {
 	private final List<ItemInfo> info;
-	private final TexI tex;
+	private final Tex tex;
 
-	public ItemTip(List<ItemInfo> info, BufferedImage img) {
+	public ItemTip(List<ItemInfo> info, Tex tex) {
 	    this.info = info;
-	    if(img == null)
-		throw(new Loading());
-	    tex = new TexI(img);
+	    this.tex = tex;
+	}
+
+	public ItemTip(List<ItemInfo> info, BufferedImage img) {
+	    this(info, mktex(img));
 	}
 
 	public GItem item() {return(item);}
@@ -100,11 +108,11 @@ public class WItem extends Widget implements DTarget {
     }
 
     public class ShortTip extends ItemTip {
-	public ShortTip(List<ItemInfo> info) {super(info, ItemInfo.shorttip(info));}
+	public ShortTip(List<ItemInfo> info) {super(info, ItemInfoCache.tip(item.infoentry(), info, false));}
     }
 
     public class LongTip extends ItemTip {
-	public LongTip(List<ItemInfo> info) {super(info, ItemInfo.longtip(info));}
+	public LongTip(List<ItemInfo> info) {super(info, ItemInfoCache.tip(item.infoentry(), info, true));}
     }
 
     private double hoverstart;
@@ -280,7 +288,18 @@ public class WItem extends Widget implements DTarget {
 	    resize(sz);
 	    lspr = spr;
 	}
+	/* Cached windows would otherwise freeze animated sprites. */
+	if((spr != null) && spr.animating())
+	    damage();
 	checkDrop();
+	/* The remaining time counts down without any message. */
+	if(meter() > 0) {
+	    String mt = metertext().a;
+	    if(!Objects.equals(mt, lmetertext)) {
+		lmetertext = mt;
+		damage();
+	    }
+	}
     }
 
     public void draw(GOut g) {
@@ -345,7 +364,9 @@ public class WItem extends Widget implements DTarget {
     private String cachedTipValue = null;
     private Tex cachedStudyTex = null;
     
-    private Tex getMeterTime() {
+    private String lmetertext = null;
+    
+    private Pair<String, String> metertext() {
 	String value = null;
 	String tip = null;
 	
@@ -357,6 +378,13 @@ public class WItem extends Widget implements DTarget {
 	    int remaining = remainingSeconds();
 	    if(remaining >= 0) {value = ClientUtils.formatTimeShort(remaining);}
 	}
+	return new Pair<>(value, tip);
+    }
+    
+    private Tex getMeterTime() {
+	Pair<String, String> mt = metertext();
+	String value = mt.a;
+	String tip = mt.b;
 	
 	if(!Objects.equals(tip, cachedTipValue)) {
 	    cachedTipValue = tip;
@@ -445,7 +473,10 @@ public class WItem extends Widget implements DTarget {
 	return CFG.Q_SHOW_SINGLE.get() ? SingleType.Quality : null;
     }
 
-    public void clearLongTip() {longtip = null;}
+    public void clearLongTip() {
+	longtip = null;
+	ItemInfoCache.clearlong(item.infoentry());
+    }
 
     public boolean mousedown(MouseDownEvent ev) {
 	if(checkXfer(ev.b)) {
@@ -503,7 +534,7 @@ public class WItem extends Widget implements DTarget {
 	
 	double remaining = -1;
 	if(WindowDetector.isWindowType(this, WND_SMELTER, WND_STACK_FURNACE)) {
-	    remaining = WELL_MINED.matches(info()) ? 41.25d : 55d; //ore smelting time in minutes
+	    remaining = WELL_MINED.matches(item.doc()) ? 41.25d : 55d; //ore smelting time in minutes
 	} else if(WindowDetector.isWindowType(this, WND_FINERY_FORGE)) {
 	    //TODO: check for coin melting time
 	    remaining = 9d; //bar smelting time in minutes
@@ -564,6 +595,7 @@ public class WItem extends Widget implements DTarget {
     }
     
     private void itemMatched() {
+	damage();
         Inventory inv = getparent(Inventory.class);
 	if(inv != null) {inv.itemsChanged();}
     }
@@ -459,6 +459,7 @@ public class Widget {
 		parent.lchild = this;
 	    parent.child = this;
 	}
+	parent.damage();
     }
     
     public void linkfirst() {
@@ -477,9 +478,11 @@ public class Widget {
 		parent.child = this;
 	    parent.lchild = this;
 	}
+	parent.damage();
     }
 	
     public void unlink() {
+	parent.damage();
 	if(next != null)
 	    next.prev = prev;
 	if(prev != null)
@@ -601,6 +604,10 @@ public class Widget {
 	    if(w != focused) {
 		Widget last = focused;
 		focused = w;
+		if(last != null)
+		    last.damage();
+		if(w != null)
+		    w.damage();
 		if(hasfocus) {
 		    if(last != null)
 			last.hasfocus = false;
@@ -812,6 +819,15 @@ public class Widget {
     public void draw(GOut g) {
 	draw(g, true);
     }
+
+    /* Set whenever this widget or anything in it may have come to
+     * look different, for widgets that cache how they are drawn. */
+    public boolean damaged = true;
+
+    public void damage() {
+	for(Widget w = this; w != null; w = w.parent)
+	    w.damaged = true;
+    }
 	
     public boolean checkhit(Coord c) {
 	return(c.isect(Coord.z, sz));
@@ -844,6 +860,11 @@ public class Widget {
 	    return(false);
 	}
 
+	/* Whether handling this event may change how w looks. */
+	protected boolean redraws(Widget w) {
+	    return(true);
+	}
+
 	public boolean propagate(Widget from) {
 	    if(!propagate)
 		return(phandled);
@@ -857,6 +878,8 @@ public class Widget {
 	    handling = w;
 	    try {
 		propagate = true;
+		if(redraws(w))
+		    w.damage();
 		if(w.handle(this))
 		    return(true);
 		return(propagate(w));
@@ -914,6 +937,8 @@ public class Widget {
 	    this.dt = dt;
 	}
 
+	protected boolean redraws(Widget w) {return(false);}
+
 	protected boolean propagation(Widget from) {
 	    for(Widget next, wdg = from.child; wdg != null; wdg = next) {
 		next = wdg.next;
@@ -937,6 +962,8 @@ public class Widget {
 	    this.out = out;
 	}
 
+	protected boolean redraws(Widget w) {return(false);}
+
 	protected boolean propagation(Widget from) {
 	    for(Widget wdg = from.child; wdg != null; wdg = wdg.next)
 		dispatch(wdg);
@@ -963,6 +990,7 @@ public class Widget {
 	}
 
 	protected boolean shandle(Widget w) {
+	    w.damage();
 	    w.uimsg(msg, args);
 	    return(true);
 	}
@@ -1059,6 +1087,8 @@ public class Widget {
 
 	public MouseMoveEvent derive(Coord c) {return(new MouseMoveEvent(this, c));}
 
+	protected boolean redraws(Widget w) {return(c.isect(Coord.z, w.sz));}
+
 	protected boolean propagation(Widget from) {
 	    for(Widget wdg = from.lchild; wdg != null; wdg = wdg.prev) {
 		if(!wdg.visible())
@@ -1115,6 +1145,8 @@ public class Widget {
 
 	public MouseHoverEvent hovering(boolean h) {hovering = h; return(this);}
 
+	protected boolean redraws(Widget w) {return(hovering);}
+
 	protected boolean propagation(Widget from) {
 	    boolean ret = false;
 	    boolean hovering = this.hovering;
@@ -1220,6 +1252,8 @@ public class Widget {
     public static class GlobKeyEvent extends KbdEvent {
 	public GlobKeyEvent(KeyEvent awt) {super(awt);}
 
+	protected boolean redraws(Widget w) {return(false);}
+
 	protected boolean propagation(Widget from) {
 	    for(Widget wdg = from.lchild; wdg != null; wdg = wdg.prev) {
 		if(dispatch(wdg))
@@ -1231,8 +1265,10 @@ public class Widget {
 	protected boolean shandle(Widget w) {
 	    if(hackhandle(this, w, "keydown", new Class<?>[] {Character.TYPE, KeyEvent.class}, awt.getKeyChar(), awt))
 		return(true);
-	    if(w.globtype(this))
+	    if(w.globtype(this)) {
+		w.damage();
 		return(true);
+	    }
 	    return(super.shandle(w));
 	}
     }
@@ -1250,6 +1286,8 @@ public class Widget {
 	    root = from.root;
 	}
 
+	protected boolean redraws(Widget w) {return(false);}
+
 	/* Return value doesn't indicate anything, it's just to be
 	 * able to do return(ev.nset(res)). */
 	public boolean set(R ret) {
@@ -1276,6 +1314,8 @@ public class Widget {
 	}
 	public TooltipQuery derive(Coord c) {return(new TooltipQuery(this, c));}
 
+	protected boolean redraws(Widget w) {return(false);}
+
 	/* Return value doesn't indicate anything, it's just to be
 	 * able to do return(ev.nset(res)). */
 	public boolean set(Object ret, Widget from) {
@@ -1525,6 +1565,7 @@ public class Widget {
 	if(Utils.eq(this.sz, sz))
 	    return;
 	this.sz = sz;
+	damage();
 	for(Widget ch = child; ch != null; ch = ch.next)
 	    ch.presize();
 	if(parent != null)
@@ -2001,12 +2042,15 @@ public class Widget {
 
     public void hide() {
 	visible = false;
-	if(parent != null)
+	if(parent != null) {
 	    parent.delfocusable(this);
+	    parent.damage();
+	}
     }
 
     public void show() {
 	visible = true;
+	damage();
 	if(parent != null)
 	    parent.newfocusable(this);
     }
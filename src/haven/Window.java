@@ -102,6 +102,14 @@ public class Window extends Widget {
     public boolean skipInitPos = false;
     public boolean skipSavePos = false;
     private boolean closed = false;
+    /* Cached windows only redraw their contents when something in
+     * them has been damaged, or when a resource has been loaded or
+     * a setting changed since they were last drawn. */
+    public static final Config.Variable<Boolean> drawcache = Config.Variable.propb("haven.uicache", true);
+    public boolean cachedraw = false;
+    public int chits, cmisses;
+    private int lastload, lastcfg;
+    private boolean hovered = false;
     private String title;
     protected Text.Furnace rcf = cf;
 
@@ -440,11 +448,27 @@ public class Window extends Widget {
 	    g.image(buf, Coord.z);
     }
 
+    private boolean cached() {
+	if(!cachedraw || !drawcache.get() || damaged)
+	    return(false);
+	if((gbuf == null) || !Utils.eq(sz, gbuf.back.tex.sz()))
+	    return(false);
+	return((lastload == Resource.loadseq) && (lastcfg == CFG.seq));
+    }
+
     public void draw(GOut og) {
 	if(animst != "dest") {
-	    GOut g = new GOut(og.out, og.basicstate().prep(gbasic()), this.sz);
-	    g.out.clear(g.state(), FragColor.fragcol, FColor.BLACK_T);
-	    drawbuf(g);
+	    if(cached()) {
+		chits++;
+	    } else {
+		damaged = false;
+		lastload = Resource.loadseq;
+		lastcfg = CFG.seq;
+		cmisses++;
+		GOut g = new GOut(og.out, og.basicstate().prep(gbasic()), this.sz);
+		g.out.clear(g.state(), FragColor.fragcol, FColor.BLACK_T);
+		drawbuf(g);
+	    }
 	}
 	if(gbuf != null)
 	    drawfin(og, gbuf);
@@ -497,6 +521,7 @@ public class Window extends Widget {
     
     protected void resize2(Coord sz) {
 	Coord psz = this.sz;
+	damage();
 	if(deco != null) {
 	    deco.iresize(sz);
 	    deco.c = deco.contarea().ul.inv();
@@ -555,6 +580,20 @@ public class Window extends Widget {
 	return((deco == null) || deco.checkhit(c));
     }
 
+    public boolean mousehover(MouseHoverEvent ev, boolean hovering) {
+	if(hovering != this.hovered) {
+	    this.hovered = hovering;
+	    damage();
+	}
+	return(super.mousehover(ev, hovering));
+    }
+
+    public String cachestats() {
+	int n = chits + cmisses;
+	return(String.format("%s: %d/%d (%.0f%%)", (cap == null) ? getClass().getSimpleName() : cap,
+			     chits, cmisses, (n > 0) ? (chits * 100.0 / n) : 0.0));
+    }
+
     public boolean mousedown(MouseDownEvent ev) {
 	if(ev.propagate(this)) {
 	    parent.setfocus(this);
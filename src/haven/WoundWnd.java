@@ -222,6 +222,7 @@ public class WoundWnd extends Widget {
 		    }
 		}
 		wounds = treesort(wounds, -1, 0);
+		damage();
 	    }
 	    super.tick(dt);
 	}
@@ -0,0 +1,163 @@
+/*
+ *  This file is part of the Haven & Hearth game client.
+ *  Copyright (C) 2009 Fredrik Tolf <fredrik@dolda2000.com>, and
+ *                     Björn Johannessen <johannessen.bjorn@gmail.com>
+ *
+ *  Redistribution and/or modification of this file is subject to the
+ *  terms of the GNU Lesser General Public License, version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  Other parts of this source tree adhere to other copying
+ *  rights. Please see the file `COPYING' in the root directory of the
+ *  source tree for details.
+ *
+ *  A copy the GNU Lesser General Public License is distributed along
+ *  with the source tree of which this file is a part in the file
+ *  `doc/LPGL-3'. If it is missing for any reason, please see the Free
+ *  Software Foundation's website at <http://www.fsf.org/>, or write
+ *  to the Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ *  Boston, MA 02111-1307 USA
+ */
+
+
+package haven.render;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.io.*;
+
+/* Counts of what the renderer is asked to do, collected over each
+ * frame and kept for the last few hundred. Draws and state changes
+ * are counted as they are recorded, not as the GL executes them,
+ * which comes to the same thing a frame later. */
+public class FrameStats {
+    public enum Stat {
+	DRAWS("draws", false),
+	BATCHES("batches", false),
+	INSTANCES("instances", false),
+	MAXBATCH("max-batch", true),
+	PROGS("programs", false),
+	TEXBINDS("tex-binds", false),
+	UNIFORMS("uniforms", false),
+	PIPESTATES("pipe-states", false),
+	FBOS("fbos", false),
+	STREAMED("bytes-streamed", false),
+	UPLOADED("bytes-uploaded", false),
+	ADDED("slots-added", false),
+	REMOVED("slots-removed", false),
+	UPDATED("slots-updated", false),
+	MKBATCH("batches-made", false),
+	RMBATCH("batches-freed", false);
+
+	public final String nm;
+	public final boolean max;
+
+	private Stat(String nm, boolean max) {
+	    this.nm = nm;
+	    this.max = max;
+	}
+    }
+    private static final Stat[] stats = Stat.values();
+    public static final FrameStats global = new FrameStats(300);
+
+    public static class Frame {
+	public final double time;
+	public final long[] v;
+
+	public Frame(double time, long[] v) {
+	    this.time = time;
+	    this.v = v;
+	}
+
+	public long get(Stat s) {return(v[s.ordinal()]);}
+    }
+
+    private final AtomicLongArray cur = new AtomicLongArray(stats.length);
+    private final Frame[] hist;
+    private int hp = 0, nf = 0;
+
+    public FrameStats(int hl) {
+	hist = new Frame[hl];
+    }
+
+    public void add(Stat s, long n) {
+	if(s.max)
+	    cur.accumulateAndGet(s.ordinal(), n, Math::max);
+	else
+	    cur.addAndGet(s.ordinal(), n);
+    }
+
+    public static void count(Stat s, long n) {
+	global.add(s, n);
+    }
+
+    public static void count(Stat s) {
+	global.add(s, 1);
+    }
+
+    /* Closes the current frame. */
+    public void frame() {
+	long[] v = new long[stats.length];
+	for(int i = 0; i < v.length; i++)
+	    v[i] = cur.getAndSet(i, 0);
+	Frame f = new Frame(System.nanoTime() / 1e9, v);
+	synchronized(this) {
+	    hist[hp] = f;
+	    hp = (hp + 1) % hist.length;
+	    nf = Math.min(nf + 1, hist.length);
+	}
+    }
+
+    /* The kept frames, oldest first. */
+    public synchronized List<Frame> history() {
+	List<Frame> ret = new ArrayList<>(nf);
+	for(int i = 0; i < nf; i++)
+	    ret.add(hist[(hp - nf + i + hist.length) % hist.length]);
+	return(ret);
+    }
+
+    public Frame last() {
+	synchronized(this) {
+	    return((nf == 0) ? null : hist[(hp - 1 + hist.length) % hist.length]);
+	}
+    }
+
+    /* Per-frame means over the kept frames, or maxima for
+     * maximum-valued statistics. */
+    public double[] average() {
+	List<Frame> fs = history();
+	double[] ret = new double[stats.length];
+	for(Frame f : fs) {
+	    for(int i = 0; i < ret.length; i++)
+		ret[i] = stats[i].max ? Math.max(ret[i], f.v[i]) : (ret[i] + f.v[i]);
+	}
+	if(!fs.isEmpty()) {
+	    for(int i = 0; i < ret.length; i++) {
+		if(!stats[i].max)
+		    ret[i] /= fs.size();
+	    }
+	}
+	return(ret);
+    }
+
+    public void csv(Writer out) throws IOException {
+	List<Frame> fs = history();
+	StringBuilder buf = new StringBuilder("time");
+	for(Stat s : stats)
+	    buf.append(',').append(s.nm);
+	out.write(buf.append('\n').toString());
+	double t0 = fs.isEmpty() ? 0 : fs.get(0).time;
+	for(Frame f : fs) {
+	    buf.setLength(0);
+	    buf.append(String.format((Locale)null, "%.4f", f.time - t0));
+	    for(long v : f.v)
+		buf.append(',').append(v);
+	    out.write(buf.append('\n').toString());
+	}
+    }
+}
@@ -644,6 +644,7 @@ public class InstanceList implements RenderList<Rendered>, RenderList.Adapter, D
 	    ni.register();
 	    ((Sole)cur).unregister();
 	    nuinst--; nbatches++; ninst += 2;
+	    FrameStats.count(FrameStats.Stat.MKBATCH);
 	} else {
 	    throw(new AssertionError());
 	}
@@ -689,6 +690,7 @@ public class InstanceList implements RenderList<Rendered>, RenderList.Adapter, D
 	    if(instreg.remove(b.key) != b)
 		throw(new AssertionError());
 	    nbatches--;
+	    FrameStats.count(FrameStats.Stat.RMBATCH);
 	}
 	ninst--;
 	if(unreg && (islotmap.remove(inst.slot) != inst))
@@ -237,6 +237,8 @@ public class GLDrawList implements DrawList {
 	final GLProgram prog;
 	final Setting[] settings;
 	BufferBGL compiled, main;
+	/* What the compiled list does, for FrameStats */
+	int ninst = 1, nprog, ntex, nuni, npst, nfbo;
 	Rendered.Order gorder;
 	final Pipe ordersrc;
 	private volatile boolean disposed = false;
@@ -262,22 +264,43 @@ public class GLDrawList implements DrawList {
 		settings[idx_uni + i] = getuniform(prog, prog.uniforms[i], bst);
 	}
 
+	private void count(int i) {
+	    if(i == idx_fbo)
+		nfbo++;
+	    else if((i >= idx_pst) && (i < idx_uni))
+		npst++;
+	    else if((i >= idx_uni) && (prog.uniforms[i - idx_uni].type instanceof Type.Sampler))
+		ntex++;
+	    else if(i >= idx_uni)
+		nuni++;
+	}
+
 	private void glupdate(DrawSlot prev) {
+	    nprog = ntex = nuni = npst = nfbo = 0;
 	    if(prev == null) {
 		compiled = main;
+		/* The drawlist applies the first slot's state itself. */
+		nprog = 1;
+		for(int i = 0; i < this.settings.length; i++)
+		    count(i);
 	    } else if(prev.prog == this.prog) {
 		BufferBGL gl = new BufferBGL();
 		for(int i = 0; i < this.settings.length; i++) {
-		    if(this.settings[i] != prev.settings[i])
+		    if(this.settings[i] != prev.settings[i]) {
 			gl.bglSubmit(this.settings[i].gl);
+			count(i);
+		    }
 		}
 		gl.bglCallList(main);
 		compiled = gl.trim();
 	    } else {
 		BufferBGL gl = new BufferBGL();
 		GLProgram.apply(gl, prev.prog, this.prog);
-		for(int i = 0; i < this.settings.length; i++)
+		nprog = 1;
+		for(int i = 0; i < this.settings.length; i++) {
 		    gl.bglSubmit(this.settings[i].gl);
+		    count(i);
+		}
 		gl.bglCallList(main);
 		compiled = gl.trim();
 	    }
@@ -867,6 +890,7 @@ public class GLDrawList implements DrawList {
 			ebo = (GLBuffer)ro;
 		}
 		slot.settings[idx_vao] = getvao(vao, ebo);
+		slot.ninst = mod.ninst;
 		if(mod.ind == null) {
 		    if(mod.ninst == 1)
 			gl.glDrawArrays(GLRender.glmode(mod.mode), mod.f, mod.n);
@@ -964,9 +988,28 @@ public class GLDrawList implements DrawList {
 	    if(g.state.prog() != first.prog)
 		throw(new ProgramMismatchException(g.state.prog(), first.prog));
 	    BGL gl = g.gl();
-	    for(DrawSlot cur = first; cur != null; last = cur, cur = cur.next())
+	    int n = 0, nb = 0, ni = 0, mb = 0, np = 0, nt = 0, nu = 0, ns = 0, nf = 0;
+	    for(DrawSlot cur = first; cur != null; last = cur, cur = cur.next()) {
 		gl.bglCallList(cur.compiled);
+		n++;
+		if(cur.ninst > 1) {
+		    nb++;
+		    ni += cur.ninst;
+		    mb = Math.max(mb, cur.ninst);
+		}
+		np += cur.nprog; nt += cur.ntex; nu += cur.nuni; ns += cur.npst; nf += cur.nfbo;
+	    }
 	    settingbuf.put(gl);
+	    FrameStats st = FrameStats.global;
+	    st.add(FrameStats.Stat.DRAWS, n);
+	    st.add(FrameStats.Stat.BATCHES, nb);
+	    st.add(FrameStats.Stat.INSTANCES, ni);
+	    st.add(FrameStats.Stat.MAXBATCH, mb);
+	    st.add(FrameStats.Stat.PROGS, np);
+	    st.add(FrameStats.Stat.TEXBINDS, nt);
+	    st.add(FrameStats.Stat.UNIFORMS, nu);
+	    st.add(FrameStats.Stat.PIPESTATES, ns);
+	    st.add(FrameStats.Stat.FBOS, nf);
 	    g.state.assume(last.bk.state());
 	}
     }
@@ -980,9 +1023,10 @@ public class GLDrawList implements DrawList {
 	    if(slotmap.put(slot, dslot) != null)
 		throw(new AssertionError());
 	}
+	FrameStats.count(FrameStats.Stat.ADDED);
     }
 
-    public void remove(Slot<? extends Rendered> slot) {
+    private void remove0(Slot<? extends Rendered> slot) {
 	synchronized(this) {
 	    DrawSlot dslot = slotmap.remove(slot);
 	    if(dslot == null)
@@ -992,16 +1036,22 @@ public class GLDrawList implements DrawList {
 	}
     }
 
+    public void remove(Slot<? extends Rendered> slot) {
+	remove0(slot);
+	FrameStats.count(FrameStats.Stat.REMOVED);
+    }
+
     public void update(Slot<? extends Rendered> slot) {
 	synchronized(this) {
 	    /* Handle exceptions from DrawSlot construction before
 	     * removing previous slot. */
 	    DrawSlot dslot = new DrawSlot(slot);
-	    remove(slot);
+	    remove0(slot);
 	    dslot.insert();
 	    if(slotmap.put(slot, dslot) != null)
 		throw(new AssertionError());
 	}
+	FrameStats.count(FrameStats.Stat.UPDATED);
     }
 
     @SuppressWarnings("unchecked")
@@ -503,6 +503,7 @@ public abstract class GLEnvironment implements Environment {
 		    if(buf.ro != null)
 			buf.ro.dispose();
 		    buf.ro = new GLReference<>(ret = new StreamBuffer(this, buf.size()));
+		    FrameStats.count(FrameStats.Stat.UPLOADED, buf.size());
 		    StreamBuffer.Fill data = (buf.init == null) ? null : (StreamBuffer.Fill)buf.init.fill(buf, this);
 		    StreamBuffer jdret = ret;
 		    GLBuffer rbuf = ret.rbuf;
@@ -529,6 +530,7 @@ public abstract class GLEnvironment implements Environment {
 		    if(buf.ro != null)
 			buf.ro.dispose();
 		    buf.ro = new GLReference<>(ret = new GLBuffer(this));
+		    FrameStats.count(FrameStats.Stat.UPLOADED, buf.size());
 		    FillBuffers.Array data = (buf.init == null) ? null : (FillBuffers.Array)buf.init.fill(buf, this);
 		    GLBuffer jdret = ret;
 		    prepare((GLRender g) -> {
@@ -565,6 +567,7 @@ public abstract class GLEnvironment implements Environment {
 		    if(buf.ro != null)
 			buf.ro.dispose();
 		    buf.ro = new GLReference<>(ret = new StreamBuffer(this, buf.size()));
+		    FrameStats.count(FrameStats.Stat.UPLOADED, buf.size());
 		    StreamBuffer.Fill data = (buf.init == null) ? null : (StreamBuffer.Fill)buf.init.fill(buf, this);
 		    StreamBuffer jdret = ret;
 		    GLBuffer rbuf = ret.rbuf;
@@ -591,6 +594,7 @@ public abstract class GLEnvironment implements Environment {
 		    if(buf.ro != null)
 			buf.ro.dispose();
 		    buf.ro = new GLReference<>(ret = new GLBuffer(this));
+		    FrameStats.count(FrameStats.Stat.UPLOADED, buf.size());
 		    FillBuffers.Array data = (buf.init == null) ? null : (FillBuffers.Array)buf.init.fill(buf, this);
 		    GLBuffer jdret = ret;
 		    prepare((GLRender g) -> {
@@ -178,10 +178,20 @@ public class GLRender implements Render, Disposable {
 		indo = env.prepare(data.ind);
 	    Disposable[] bufs = new Disposable[data.va.bufs.length];
 	    int ne = 0;
+	    long streamed = ((data.ind != null) && (data.ind.usage == EPHEMERAL)) ? data.ind.size() : 0;
 	    for(int i = 0; i < data.va.bufs.length; i++) {
 		bufs[i] = env.prepare(data.va.bufs[i]);
-		if(data.va.bufs[i].usage == EPHEMERAL)
+		if(data.va.bufs[i].usage == EPHEMERAL) {
 		    ne++;
+		    streamed += data.va.bufs[i].size();
+		}
+	    }
+	    FrameStats.count(FrameStats.Stat.DRAWS);
+	    FrameStats.count(FrameStats.Stat.STREAMED, streamed);
+	    if(data.ninst > 1) {
+		FrameStats.count(FrameStats.Stat.BATCHES);
+		FrameStats.count(FrameStats.Stat.INSTANCES, data.ninst);
+		FrameStats.count(FrameStats.Stat.MAXBATCH, data.ninst);
 	    }
 
 	    BGL.ID[] enable = new BGL.ID[data.va.fmt.inputs.length];
@@ -320,6 +330,7 @@ public class GLRender implements Render, Disposable {
     }
 
     public <T extends DataBuffer> void update(T buf, DataBuffer.Filler<? super T> fill) {
+	FrameStats.count(FrameStats.Stat.STREAMED, buf.size());
 	if(buf instanceof Model.Indices) {
 	    Model.Indices ibuf = (Model.Indices)buf;
 	    switch(ibuf.usage) {
@@ -434,6 +445,7 @@ public class GLRender implements Render, Disposable {
 	    update(buf, fill);
 	    return;
 	}
+	FrameStats.count(FrameStats.Stat.STREAMED, to - from);
 	/* XXX: There is some case to be made that this whole
 	 * implementation should be able to interact better with
 	 * stream-buffers, but I'm not totally sure how. */
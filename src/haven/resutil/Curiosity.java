@@ -35,7 +35,7 @@ import java.awt.image.BufferedImage;
 
 import static haven.QualityList.SingleType.*;
 
-public class Curiosity extends ItemInfo.Tip implements GItem.ColorInfo {
+public class Curiosity extends ItemInfo.Tip implements GItem.ColorInfo, ItemInfo.Local {
     public final Color better = new Color(0, 255, 0, 64), worse = new Color(255, 0, 0, 64);
     public final int exp, mw, enc, time;
     public transient final int lph;
@@ -10,10 +10,11 @@ public class CustomizeResLayer {
     public static <I, L extends Resource.IDLayer<I>> boolean needReturnNull(Resource res, Class<L> cl, I id) {
 	
 	//skip 'decal' bone offset for cupboards so decals would be positioned statically at (0,0,0) and not moving on the door
-	if(CFG.DISPLAY_DECALS_ON_TOP.get() 
-	    && cl == Skeleton.BoneOffset.class
-	    && res.name.equals(ResName.CUPBOARD) 
-	    && Objects.equals(id, "decal")) {
+	//checked cheapest-first, since this runs on every ID layer lookup
+	if(cl == Skeleton.BoneOffset.class
+	    && Objects.equals(id, "decal")
+	    && res.name.equals(ResName.CUPBOARD)
+	    && CFG.DISPLAY_DECALS_ON_TOP.get()) {
 	    return true;
 	}
 	
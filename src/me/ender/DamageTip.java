@@ -8,21 +8,33 @@ import java.util.List;
 public class DamageTip {
     
     public static void process(List<ItemInfo> tips, ItemInfo.Owner owner) {
-	if(!CFG.IMPROVE_DAMAGE_TIP.get() || !(owner instanceof GItem)) {return;}
-	GItem item = (GItem) owner;
-	String name = item.resname();
+	if(!CFG.IMPROVE_DAMAGE_TIP.get() || !(owner instanceof ItemInfo.ResOwner)) {return;}
+	String name = resname((ItemInfo.ResOwner) owner);
 	ItemInfo tip = tips.stream().filter(inf -> Reflect.is(inf, "Damage")).findFirst().orElse(null);
 	boolean isMelee = name.endsWith("/cutthroatknuckles") || tips.stream().anyMatch(inf -> Reflect.is(inf, "Range"));
 	boolean isRanged = name.endsWith("/sling") || name.endsWith("/huntersbow") || name.endsWith("/rangersbow"); 
 	if(tip == null || (!isMelee && !isRanged)) {return;}
 	
+	//resolved through the context, so that info shared among items gets built for this one instead
+	GItem item = owner.fcontext(GItem.class, false);
+	if(item == null) {return;}
 	tips.remove(tip);
 	int dmg = Reflect.getFieldValueInt(tip, "dmg");
 	tips.add(new Base(item, dmg));
 	tips.add(new Real(item, dmg, isMelee ? "str" : "ranged"));
     }
     
-    private static class Base extends WeaponInfo {
+    private static String resname(ItemInfo.ResOwner owner) {
+	try {
+	    Resource res = owner.resource();
+	    if(res != null) {
+		return res.name;
+	    }
+	} catch (Loading ignore) {}
+	return "";
+    }
+    
+    private static class Base extends WeaponInfo implements ItemInfo.Local {
 	private final int dmg;
 	private final GItem item;
 	
@@ -54,7 +66,7 @@ public class DamageTip {
 	}
     }
     
-    private static class Real extends WeaponInfo {
+    private static class Real extends WeaponInfo implements ItemInfo.Local {
 	private final GItem item;
 	private final int dmg;
 	private final String aname;
@@ -34,13 +34,13 @@ public class KinInfo {
 	}
     }
     
-    public static KinInfo from(Gob gob, Map<Class<? extends GAttrib>, GAttrib> attrs) {
+    public static KinInfo from(Gob gob, Gob.AttrSet attrs) {
 	Buddy buddy = null;
 	GAttrib villager = null;
 	if(VILLAGER == null) {
-	    for (Map.Entry<Class<? extends GAttrib>, GAttrib> entry : attrs.entrySet()) {
-		Class<? extends GAttrib> key = entry.getKey();
-		GAttrib value = entry.getValue();
+	    for (int i = 0; i < attrs.size(); i++) {
+		Class<? extends GAttrib> key = attrs.key(i);
+		GAttrib value = attrs.get(i);
 		if(value instanceof Buddy) {
 		    buddy = (Buddy) value;
 		}